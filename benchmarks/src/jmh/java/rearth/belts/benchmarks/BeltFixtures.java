@@ -0,0 +1,72 @@
+package rearth.belts.benchmarks;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.Pair;
+import net.minecraft.util.math.Vec3d;
+import rearth.belts.blocks.BeltItemQueue;
+import rearth.belts.blocks.ChuteBlockEntity;
+import rearth.belts.util.SplineUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// shared test data for the benchmarks. Builds belts of realistic shapes without needing a world.
+public final class BeltFixtures {
+    
+    public static final Vec3d START = new Vec3d(0.5, 64.5, 0);
+    public static final Vec3d START_DIR = new Vec3d(0, 0, 1);
+    
+    // supports are placed every 4 blocks, alternating left and right, with alternating facings to create curves
+    public static List<Pair<Vec3d, Vec3d>> createSupports(int count) {
+        var result = new ArrayList<Pair<Vec3d, Vec3d>>();
+        for (int i = 0; i < count; i++) {
+            var pos = new Vec3d(i % 2 == 0 ? 3.5 : -2.5, 64.5 + (i % 3), 4.5 + i * 4);
+            var dir = i % 2 == 0 ? new Vec3d(0, 0, 1) : new Vec3d(1, 0, 0);
+            result.add(new Pair<>(pos, dir));
+        }
+        return result;
+    }
+    
+    public static Vec3d getEnd(int supportCount) {
+        return new Vec3d(0.5, 64.5, 8 + supportCount * 4);
+    }
+    
+    public static Vec3d getEndDir() {
+        return new Vec3d(0, 0, 1);
+    }
+    
+    public static List<Pair<Vec3d, Vec3d>> createSegmentPoints(int supportCount) {
+        return SplineUtil.getPointPairs(START, START_DIR, getEnd(supportCount), getEndDir(), createSupports(supportCount));
+    }
+    
+    public static ChuteBlockEntity.BeltData createBeltData(int supportCount) {
+        return ChuteBlockEntity.BeltData.create(createSegmentPoints(supportCount));
+    }
+    
+    // items are spread evenly along the belt. The stack is left empty, the benchmarks never touch it.
+    public static Deque<ChuteBlockEntity.BeltItem> createItems(int count) {
+        var result = new ArrayDeque<ChuteBlockEntity.BeltItem>();
+        for (int i = 0; i < count; i++) {
+            var progress = 1f - (i + 1) / (float) (count + 1);
+            result.addLast(new ChuteBlockEntity.BeltItem(progress, (short) i, null));
+        }
+        return result;
+    }
+    
+    public static BeltItemQueue createQueue(int count) {
+        var result = new BeltItemQueue();
+        result.load(createItems(count));
+        return result;
+    }
+    
+    // mimics the output of ItemStack.encode for a simple stack without components
+    public static NbtCompound createStackNbt() {
+        var compound = new NbtCompound();
+        compound.putString("id", "minecraft:iron_ingot");
+        compound.putInt("count", 64);
+        return compound;
+    }
+    
+}
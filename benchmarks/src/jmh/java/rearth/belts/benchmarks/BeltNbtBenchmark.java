@@ -0,0 +1,76 @@
+package rearth.belts.benchmarks;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import rearth.belts.blocks.BeltItemQueue;
+import rearth.belts.blocks.ChuteBlockEntity;
+
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// write and read of a fully loaded belt, in the same layout as ChuteBlockEntity.writeNbt
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BeltNbtBenchmark {
+    
+    @Param({"8", "64"})
+    public int itemCount;
+    
+    private BeltItemQueue items;
+    private long[] midPoints;
+    private NbtCompound written;
+    private byte[] serialized;
+    
+    @Setup
+    public void setup() throws IOException {
+        items = BeltFixtures.createQueue(itemCount);
+        midPoints = BeltFixtures.createSupports(6).stream().mapToLong(pair -> BlockPos.ofFloored(pair.getLeft()).asLong()).toArray();
+        written = writeBelt();
+        serialized = toBytes(written);
+    }
+    
+    private NbtCompound writeBelt() {
+        var nbt = new NbtCompound();
+        nbt.putLong("target", new BlockPos(0, 64, 40).asLong());
+        nbt.putLongArray("midpoints", midPoints);
+        nbt.put("filter", new NbtCompound());
+        nbt.put("moving", ChuteBlockEntity.writeBeltItems(items, stack -> BeltFixtures.createStackNbt()));
+        return nbt;
+    }
+    
+    private static byte[] toBytes(NbtCompound nbt) throws IOException {
+        var output = new ByteArrayOutputStream();
+        NbtIo.write(nbt, new DataOutputStream(output));
+        return output.toByteArray();
+    }
+    
+    @Benchmark
+    public NbtCompound writeNbt() {
+        return writeBelt();
+    }
+    
+    @Benchmark
+    public List<ChuteBlockEntity.BeltItem> readNbt() {
+        return ChuteBlockEntity.readBeltItems(written.getList("moving", NbtElement.COMPOUND_TYPE), element -> null);
+    }
+    
+    // includes the binary serialization, as done when the chunk is saved or the belt is sent to a client
+    @Benchmark
+    public void roundTrip(Blackhole blackhole) throws IOException {
+        var bytes = toBytes(writeBelt());
+        var read = NbtIo.readCompound(new DataInputStream(new ByteArrayInputStream(bytes)));
+        blackhole.consume(ChuteBlockEntity.readBeltItems(read.getList("moving", NbtElement.COMPOUND_TYPE), element -> null));
+    }
+    
+    @Benchmark
+    public NbtCompound readSerialized() throws IOException {
+        return NbtIo.readCompound(new DataInputStream(new ByteArrayInputStream(serialized)));
+    }
+    
+}
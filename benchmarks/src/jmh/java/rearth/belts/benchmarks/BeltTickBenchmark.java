@@ -0,0 +1,93 @@
+package rearth.belts.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rearth.belts.blocks.BeltItemQueue;
+import rearth.belts.blocks.ChuteBlockEntity;
+
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+// simulates the per tick item movement of a single belt
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BeltTickBenchmark {
+    
+    private static final float BELT_SPEED = 1f;
+    private static final float SQUASH_FACTOR = 0.8f;
+    
+    @Param({"8", "32", "128"})
+    public int itemCount;
+    
+    // stand-in for the target inventory, accepts one insertion every n attempts
+    @Param({"1", "20"})
+    public int acceptEvery;
+    
+    private Deque<ChuteBlockEntity.BeltItem> items;
+    private BeltItemQueue queue;
+    private double beltLength;
+    private int insertAttempts;
+    
+    @Setup(Level.Iteration)
+    public void setup() {
+        beltLength = BeltFixtures.createBeltData(4).totalLength();
+        items = BeltFixtures.createItems(itemCount);
+        queue = BeltFixtures.createQueue(itemCount);
+        insertAttempts = 0;
+    }
+    
+    // the previous per item logic of ChuteBlockEntity.moveItemsOnBelt, kept as baseline. Delivered items are put back at the start to keep the item count stable.
+    @Benchmark
+    public int moveItemsStep() {
+        var progressDelta = BELT_SPEED / beltLength / 20f;
+        
+        boolean unloaded = false;
+        var outputQueue = 0;
+        
+        for (var item : items.reversed()) {
+            var newProgress = item.progress + progressDelta;
+            var inQueue = newProgress >= getPotentialQueueStart(outputQueue);
+            
+            if (inQueue) {
+                outputQueue++;
+            } else {
+                item.progress = (float) newProgress;
+            }
+            item.queued = inQueue;
+            
+            if (inQueue && outputQueue == 1 && ++insertAttempts % acceptEvery == 0) {
+                outputQueue = 0;
+                unloaded = true;
+            }
+        }
+        
+        if (unloaded) {
+            var delivered = items.removeLast();
+            delivered.progress = 0;
+            items.addFirst(delivered);
+        }
+        
+        return outputQueue;
+    }
+    
+    // same logic as ChuteBlockEntity.moveItemsOnBelt, free items are moved through the shared offset of the BeltItemQueue
+    @Benchmark
+    public int moveItemsBatched() {
+        var progressDelta = BELT_SPEED / beltLength / 20f;
+        queue.advance(progressDelta, SQUASH_FACTOR / beltLength, null);
+        
+        if (queue.getQueuedCount() > 0 && ++insertAttempts % acceptEvery == 0) {
+            var delivered = queue.removeLast();
+            queue.releaseQueue();
+            queue.addFirst(delivered, 0);
+        }
+        
+        return queue.getQueuedCount();
+    }
+    
+    private float getPotentialQueueStart(int outputQueue) {
+        var queueSize = outputQueue * SQUASH_FACTOR / beltLength;
+        return (float) (1f - queueSize);
+    }
+    
+}
@@ -0,0 +1,67 @@
+package rearth.belts.benchmarks;
+
+import net.minecraft.util.Pair;
+import net.minecraft.util.math.Vec3d;
+import org.joml.Vector3d;
+import org.openjdk.jmh.annotations.*;
+import rearth.belts.blocks.ChuteBlockEntity;
+import rearth.belts.util.SplineUtil;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SplineBenchmark {
+    
+    @Param({"0", "4", "12"})
+    public int supportCount;
+    
+    private List<Pair<Vec3d, Vec3d>> supports;
+    private List<Pair<Vec3d, Vec3d>> segmentPoints;
+    private ChuteBlockEntity.BeltData beltData;
+    private final Vector3d output = new Vector3d();
+    private double progress;
+    
+    @Setup
+    public void setup() {
+        supports = BeltFixtures.createSupports(supportCount);
+        segmentPoints = BeltFixtures.createSegmentPoints(supportCount);
+        beltData = BeltFixtures.createBeltData(supportCount);
+    }
+    
+    // steps through the belt in uneven steps, so that all segments are hit
+    private double nextProgress() {
+        progress += 0.0137;
+        if (progress > 1) progress -= 1;
+        return progress;
+    }
+    
+    @Benchmark
+    public Vec3d positionOnSpline() {
+        return beltData.getPosition(nextProgress());
+    }
+    
+    @Benchmark
+    public Vector3d positionOnSplineInto() {
+        return beltData.getPosition(nextProgress(), output);
+    }
+    
+    @Benchmark
+    public Vector3d tangentOnSplineInto() {
+        return beltData.getTangent(nextProgress(), output);
+    }
+    
+    @Benchmark
+    public List<Pair<Vec3d, Vec3d>> pointPairs() {
+        return SplineUtil.getPointPairs(BeltFixtures.START, BeltFixtures.START_DIR, BeltFixtures.getEnd(supportCount), BeltFixtures.getEndDir(), supports);
+    }
+    
+    // the world lookups of BeltData.create(entity) are not included, this only covers building the arc length table
+    @Benchmark
+    public ChuteBlockEntity.BeltData createBeltData() {
+        return ChuteBlockEntity.BeltData.create(segmentPoints);
+    }
+    
+}
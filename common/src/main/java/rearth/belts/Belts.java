@@ -1,19 +1,32 @@
 package rearth.belts;
 
+import dev.architectury.registry.ReloadListenerRegistry;
+import net.minecraft.resource.ResourceType;
+import net.minecraft.resource.SynchronousResourceReloader;
 import net.minecraft.util.Identifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rearth.belts.blocks.BeltNetworkManager;
+import rearth.belts.blocks.ChuteFilter;
+import rearth.belts.network.BeltsNetworking;
 
 public final class Belts {
     public static final String MOD_ID = "belts";
     public static final Logger LOGGER = LoggerFactory.getLogger(MOD_ID);
 
     public static void init() {
+        BeltsConfig.load();
         BlockContent.BLOCKS.register();
         ItemContent.ITEMS.register();
         BlockEntitiesContent.TYPES.register();
         ComponentContent.COMPONENTS.register();
         ItemGroupContent.GROUPS.register();
+        BeltsNetworking.init();
+        BeltNetworkManager.init();
+        BeltsCommands.init();
+        
+        // compiled chute filters cache FTB filter results, which may depend on tags
+        ReloadListenerRegistry.register(ResourceType.SERVER_DATA, (SynchronousResourceReloader) manager -> ChuteFilter.invalidateAll());
     }
     
     public static Identifier id(String path) {
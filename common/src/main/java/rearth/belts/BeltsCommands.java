@@ -0,0 +1,118 @@
+package rearth.belts;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import dev.architectury.event.events.common.CommandRegistrationEvent;
+import net.minecraft.command.argument.BlockPosArgumentType;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.math.BlockPos;
+import rearth.belts.blocks.BeltNetworkManager;
+import rearth.belts.blocks.ChuteBlockEntity;
+
+import java.util.Comparator;
+import java.util.function.ToDoubleFunction;
+
+// /belts stats [nearby [radius] | top <busiest|blocked> [count] | at <pos> [reset]]
+// Shows the throughput counters of the belts in the current dimension. Belts are identified by the position of their source chute.
+public final class BeltsCommands {
+    
+    private static final int DEFAULT_RADIUS = 32;
+    private static final int DEFAULT_COUNT = 10;
+    
+    public static void init() {
+        CommandRegistrationEvent.EVENT.register((dispatcher, registry, selection) -> register(dispatcher));
+    }
+    
+    private static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("belts")
+          .requires(source -> source.hasPermissionLevel(2))
+          .then(CommandManager.literal("stats")
+            .executes(context -> showNearby(context, DEFAULT_RADIUS))
+            .then(CommandManager.literal("nearby")
+              .executes(context -> showNearby(context, DEFAULT_RADIUS))
+              .then(CommandManager.argument("radius", IntegerArgumentType.integer(1, 512))
+                .executes(context -> showNearby(context, IntegerArgumentType.getInteger(context, "radius")))))
+            .then(CommandManager.literal("top")
+              .then(CommandManager.literal("busiest")
+                .executes(context -> showTop(context, "busiest", ChuteBlockEntity.BeltStats::getDeliveredPerMinute, DEFAULT_COUNT))
+                .then(CommandManager.argument("count", IntegerArgumentType.integer(1, 100))
+                  .executes(context -> showTop(context, "busiest", ChuteBlockEntity.BeltStats::getDeliveredPerMinute, IntegerArgumentType.getInteger(context, "count")))))
+              .then(CommandManager.literal("blocked")
+                .executes(context -> showTop(context, "blocked", ChuteBlockEntity.BeltStats::getBlockedRatio, DEFAULT_COUNT))
+                .then(CommandManager.argument("count", IntegerArgumentType.integer(1, 100))
+                  .executes(context -> showTop(context, "blocked", ChuteBlockEntity.BeltStats::getBlockedRatio, IntegerArgumentType.getInteger(context, "count"))))))
+            .then(CommandManager.literal("at")
+              .then(CommandManager.argument("pos", BlockPosArgumentType.blockPos())
+                .executes(context -> showBelt(context, BlockPosArgumentType.getLoadedBlockPos(context, "pos"), false))
+                .then(CommandManager.literal("reset")
+                  .executes(context -> showBelt(context, BlockPosArgumentType.getLoadedBlockPos(context, "pos"), true)))))));
+    }
+    
+    private static int showNearby(CommandContext<ServerCommandSource> context, int radius) {
+        var source = context.getSource();
+        var center = source.getPosition();
+        var radiusSq = (double) radius * radius;
+        
+        var belts = BeltNetworkManager.get(source.getWorld()).getBelts().stream()
+                      .filter(belt -> belt.getPos().getSquaredDistance(center) <= radiusSq)
+                      .sorted(Comparator.comparingDouble(belt -> belt.getPos().getSquaredDistance(center)))
+                      .limit(DEFAULT_COUNT)
+                      .toList();
+        
+        source.sendFeedback(() -> Text.translatable("command.belts.stats.nearby", belts.size(), radius).formatted(Formatting.GOLD), false);
+        for (var belt : belts)
+            source.sendFeedback(() -> formatSummary(belt), false);
+        return belts.size();
+    }
+    
+    private static int showTop(CommandContext<ServerCommandSource> context, String type, ToDoubleFunction<ChuteBlockEntity.BeltStats> metric, int count) {
+        var source = context.getSource();
+        
+        var belts = BeltNetworkManager.get(source.getWorld()).getBelts().stream()
+                      .sorted(Comparator.comparingDouble((ChuteBlockEntity belt) -> metric.applyAsDouble(belt.getStats())).reversed())
+                      .limit(count)
+                      .toList();
+        
+        source.sendFeedback(() -> Text.translatable("command.belts.stats.top." + type, belts.size()).formatted(Formatting.GOLD), false);
+        for (var belt : belts)
+            source.sendFeedback(() -> formatSummary(belt), false);
+        return belts.size();
+    }
+    
+    private static int showBelt(CommandContext<ServerCommandSource> context, BlockPos pos, boolean reset) {
+        var source = context.getSource();
+        var candidate = source.getWorld().getBlockEntity(pos, BlockEntitiesContent.CHUTE_BLOCK.get());
+        if (candidate.isEmpty() || candidate.get().getTarget() == null || candidate.get().getTarget().equals(BlockPos.ORIGIN)) {
+            source.sendError(Text.translatable("command.belts.stats.no_belt", pos.toShortString()));
+            return 0;
+        }
+        
+        var belt = candidate.get();
+        if (reset) {
+            belt.resetStats();
+            source.sendFeedback(() -> Text.translatable("command.belts.stats.reset", pos.toShortString()), true);
+            return 1;
+        }
+        
+        var stats = belt.getStats();
+        source.sendFeedback(() -> Text.translatable("command.belts.stats.belt", pos.toShortString(), belt.getTarget().toShortString(), Text.translatable("tier.belts." + belt.getTier().getConfigName())).formatted(Formatting.GOLD), false);
+        source.sendFeedback(() -> Text.translatable("command.belts.stats.duration", stats.ticks() / 20), false);
+        source.sendFeedback(() -> Text.translatable("command.belts.stats.items", stats.extracted(), stats.delivered(), format(stats.getDeliveredPerMinute())), false);
+        source.sendFeedback(() -> Text.translatable("command.belts.stats.blocked", stats.blockedTicks(), format(stats.getBlockedRatio() * 100)), false);
+        source.sendFeedback(() -> Text.translatable("command.belts.stats.failed", stats.failedExtractions(), stats.failedInserts()), false);
+        return 1;
+    }
+    
+    private static Text formatSummary(ChuteBlockEntity belt) {
+        var stats = belt.getStats();
+        return Text.translatable("command.belts.stats.summary", belt.getPos().toShortString(), format(stats.getDeliveredPerMinute()), format(stats.getBlockedRatio() * 100), stats.failedExtractions(), stats.failedInserts());
+    }
+    
+    private static String format(double value) {
+        return String.format("%.1f", value);
+    }
+}
@@ -0,0 +1,124 @@
+package rearth.belts;
+
+import dev.architectury.platform.Platform;
+import rearth.belts.blocks.BeltTier;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Properties;
+
+// Simple properties based config, stored in config/belts.properties. Missing or invalid entries are reset to their default.
+public final class BeltsConfig {
+    
+    private static final String FILE_NAME = "belts.properties";
+    
+    // client: beyond this distance (in blocks), the belt mesh uses longer segments without curve refinement
+    public static int beltDetailDistance = 24;
+    // client: beyond this distance, only the top of the belt mesh is drawn
+    public static int beltSimpleDistance = 56;
+    // client: items further away than this are not rendered
+    public static int itemRenderDistance = 64;
+    // client: beyond this distance, only every second item on a belt is rendered
+    public static int itemDetailDistance = 32;
+    
+    // server: throughput of each belt tier
+    private static final EnumMap<BeltTier, BeltTier.Settings> TIER_SETTINGS = new EnumMap<>(BeltTier.class);
+    // client: tier settings sent by the server the client is connected to, empty otherwise
+    private static final EnumMap<BeltTier, BeltTier.Settings> SERVER_TIER_SETTINGS = new EnumMap<>(BeltTier.class);
+    
+    public static void load() {
+        var path = Platform.getConfigFolder().resolve(FILE_NAME);
+        var properties = new Properties();
+        
+        if (Files.exists(path)) {
+            try (Reader reader = Files.newBufferedReader(path)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                Belts.LOGGER.error("Unable to read belts config, using defaults", e);
+            }
+        }
+        
+        beltDetailDistance = getInt(properties, "beltDetailDistance", beltDetailDistance);
+        beltSimpleDistance = getInt(properties, "beltSimpleDistance", beltSimpleDistance);
+        itemRenderDistance = getInt(properties, "itemRenderDistance", itemRenderDistance);
+        itemDetailDistance = getInt(properties, "itemDetailDistance", itemDetailDistance);
+        
+        // server: throughput of each belt tier. Speeds are in blocks per second, intervals in ticks.
+        for (var tier : BeltTier.values()) {
+            var prefix = "tier." + tier.getConfigName() + ".";
+            var defaults = tier.getDefaults();
+            TIER_SETTINGS.put(tier, new BeltTier.Settings(
+              getFloat(properties, prefix + "speed", defaults.speed()),
+              Math.max(1, getInt(properties, prefix + "extractionInterval", defaults.extractionInterval())),
+              Math.clamp(getInt(properties, prefix + "stackSize", defaults.stackSize()), 1, 64),
+              getFloat(properties, prefix + "squashFactor", defaults.squashFactor())));
+        }
+        
+        // write back, to add new or fixed entries
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            properties.store(writer, "Belts config. All distances are in blocks.");
+        } catch (IOException e) {
+            Belts.LOGGER.error("Unable to write belts config", e);
+        }
+    }
+    
+    // the configured values of a tier, as used by the server
+    public static BeltTier.Settings getTierSettings(BeltTier tier) {
+        return TIER_SETTINGS.getOrDefault(tier, tier.getDefaults());
+    }
+    
+    // the values of the server the client is connected to. Falls back to the local config while not connected.
+    public static BeltTier.Settings getServerTierSettings(BeltTier tier) {
+        var settings = SERVER_TIER_SETTINGS.get(tier);
+        return settings != null ? settings : getTierSettings(tier);
+    }
+    
+    // all tiers in ordinal order, as sent to joining players
+    public static List<BeltTier.Settings> getAllTierSettings() {
+        return Arrays.stream(BeltTier.values()).map(BeltsConfig::getTierSettings).toList();
+    }
+    
+    // client: called with the tier settings sent by the server, or an empty list when leaving the server
+    public static void setServerTierSettings(List<BeltTier.Settings> settings) {
+        SERVER_TIER_SETTINGS.clear();
+        var tiers = BeltTier.values();
+        for (int i = 0; i < Math.min(tiers.length, settings.size()); i++)
+            SERVER_TIER_SETTINGS.put(tiers[i], settings.get(i));
+    }
+    
+    private static int getInt(Properties properties, String key, int defaultValue) {
+        var value = properties.getProperty(key);
+        if (value != null) {
+            try {
+                var result = Integer.parseInt(value.trim());
+                if (result >= 0) return result;
+            } catch (NumberFormatException ignored) {
+            }
+            Belts.LOGGER.warn("Invalid value '{}' for {} in belts config, using {}", value, key, defaultValue);
+        }
+        
+        properties.setProperty(key, String.valueOf(defaultValue));
+        return defaultValue;
+    }
+    
+    // only positive values are valid
+    private static float getFloat(Properties properties, String key, float defaultValue) {
+        var value = properties.getProperty(key);
+        if (value != null) {
+            try {
+                var result = Float.parseFloat(value.trim());
+                if (result > 0 && Float.isFinite(result)) return result;
+            } catch (NumberFormatException ignored) {
+            }
+            Belts.LOGGER.warn("Invalid value '{}' for {} in belts config, using {}", value, key, defaultValue);
+        }
+        
+        properties.setProperty(key, String.valueOf(defaultValue));
+        return defaultValue;
+    }
+}
@@ -8,6 +8,7 @@ import net.minecraft.block.AbstractBlock;
 import net.minecraft.block.Block;
 import net.minecraft.block.Blocks;
 import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.tag.TagKey;
 import net.minecraft.sound.BlockSoundGroup;
 
 public class BlockContent {
@@ -18,4 +19,7 @@ public class BlockContent {
     public static final RegistrySupplier<Block> CONVEYOR_MODEL = BLOCKS.register(Belts.id("conveyor_model"), () -> new Block(AbstractBlock.Settings.copy(Blocks.GLASS).nonOpaque()));
     public static final RegistrySupplier<Block> CONVEYOR_SUPPORT_BLOCK = BLOCKS.register(Belts.id("conveyor_support"), () -> new ConveyorSupportBlock(AbstractBlock.Settings.copy(Blocks.GLASS).sounds(BlockSoundGroup.DRIPSTONE_BLOCK).nonOpaque()));
     
+    // containers that store items unchanged, chained belts pass items past them directly
+    public static final TagKey<Block> PASS_THROUGH_CONTAINERS = TagKey.of(RegistryKeys.BLOCK, Belts.id("pass_through_containers"));
+    
 }
@@ -7,6 +7,7 @@ import net.minecraft.network.codec.PacketCodecs;
 import net.minecraft.registry.RegistryKeys;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
+import rearth.belts.blocks.ChuteFilter;
 
 import java.util.List;
 
@@ -22,4 +23,7 @@ public class ComponentContent {
     public static final RegistrySupplier<ComponentType<List<BlockPos>>> MIDPOINTS = COMPONENTS.register(Belts.id("belt_midpoints"),
       () -> ComponentType.<List<BlockPos>>builder().codec(BlockPos.CODEC.listOf()).packetCodec(BlockPos.PACKET_CODEC.collect(PacketCodecs.toList())).build());
     
+    public static final RegistrySupplier<ComponentType<ChuteFilter.Mode>> FILTER_MODE = COMPONENTS.register(Belts.id("filter_mode"),
+      () -> ComponentType.<ChuteFilter.Mode>builder().codec(ChuteFilter.Mode.CODEC).packetCodec(ChuteFilter.Mode.PACKET_CODEC).build());
+    
 }
@@ -1,6 +1,8 @@
 package rearth.belts;
 
+import rearth.belts.blocks.BeltTier;
 import rearth.belts.items.BeltItem;
+import rearth.belts.items.BeltUpgradeItem;
 import rearth.belts.items.TooltipBlockItem;
 import dev.architectury.registry.registries.DeferredRegister;
 import dev.architectury.registry.registries.RegistrySupplier;
@@ -14,5 +16,7 @@ public class ItemContent {
     public static final RegistrySupplier<Item> CHUTE = ITEMS.register(Belts.id("chute"), () -> new TooltipBlockItem(BlockContent.CHUTE_BLOCK.get(), new Item.Settings().arch$tab(ItemGroupContent.BELTS_GROUP)));
     public static final RegistrySupplier<Item> CONVEYOR_SUPPORT = ITEMS.register(Belts.id("conveyor_support"), () -> new TooltipBlockItem(BlockContent.CONVEYOR_SUPPORT_BLOCK.get(), new Item.Settings().arch$tab(ItemGroupContent.BELTS_GROUP)));
     public static final RegistrySupplier<Item> BELT = ITEMS.register(Belts.id("belt"), () -> new BeltItem(new Item.Settings().arch$tab(ItemGroupContent.BELTS_GROUP)));
+    public static final RegistrySupplier<Item> BELT_UPGRADE_FAST = ITEMS.register(Belts.id("belt_upgrade_fast"), () -> new BeltUpgradeItem(BeltTier.FAST, new Item.Settings().arch$tab(ItemGroupContent.BELTS_GROUP)));
+    public static final RegistrySupplier<Item> BELT_UPGRADE_EXPRESS = ITEMS.register(Belts.id("belt_upgrade_express"), () -> new BeltUpgradeItem(BeltTier.EXPRESS, new Item.Settings().arch$tab(ItemGroupContent.BELTS_GROUP)));
     
 }
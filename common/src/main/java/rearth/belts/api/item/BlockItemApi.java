@@ -2,6 +2,7 @@ package rearth.belts.api.item;
 
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.world.World;
@@ -10,4 +11,24 @@ import org.jetbrains.annotations.Nullable;
 public interface BlockItemApi {
     
     ItemApi.InventoryStorage find(World world, BlockPos pos, @Nullable BlockState state, @Nullable BlockEntity entity, @Nullable Direction direction);
+    
+    /**
+     * Creates a cached lookup for the inventory at the given position, backed by the platform specific capability/api cache.
+     * The cache stays valid when the block entity at the position is replaced, so it can be kept for as long as the querying block exists.
+     *
+     * @param world     the world to query
+     * @param pos       the position of the inventory
+     * @param direction the side the inventory is accessed from
+     * @return the cache, never null
+     */
+    Cache createCache(ServerWorld world, BlockPos pos, Direction direction);
+    
+    interface Cache {
+        
+        /**
+         * @return the inventory currently at the cached position, or null if there is none
+         */
+        @Nullable
+        ItemApi.InventoryStorage find();
+    }
 }
@@ -1,6 +1,10 @@
 package rearth.belts.api.item;
 
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Predicate;
 
 public class ItemApi {
     
@@ -31,6 +35,19 @@ public class ItemApi {
          */
         int insertToSlot(ItemStack inserted, int slot, boolean simulate);
         
+        /**
+         * Inserts the whole ItemStack into the inventory, or nothing at all if it doesn't fit completely.
+         * Implementations should do this in a single pass, instead of a simulated and a real insertion.
+         *
+         * @param inserted the ItemStack to insert
+         * @return true if all items were inserted
+         */
+        default boolean insertExact(ItemStack inserted) {
+            if (insert(inserted, true) != inserted.getCount()) return false;
+            insert(inserted, false);
+            return true;
+        }
+        
         /**
          * Checks if the inventory supports extraction.
          *
@@ -59,6 +76,56 @@ public class ItemApi {
          */
         int extractFromSlot(ItemStack extracted, int slot, boolean simulate);
         
+        /**
+         * Returns a counter that changes whenever the content of the inventory is changed through the storage itself.
+         * Used together with getChangeCount to skip scanning unchanged inventories.
+         *
+         * @return the current version, or -1 if the storage has no version
+         */
+        default long getChangeVersion() {
+            return -1;
+        }
+        
+        /**
+         * Returns the amount of content changes signaled by the block entity that owns the inventory, e.g. through markDirty.
+         * This also covers changes made directly to the inventory. Compared separately from getChangeVersion, so the two never collide.
+         *
+         * @return the current count, or -1 if the owner can't be tracked
+         */
+        default long getChangeCount() {
+            return -1;
+        }
+        
+        /**
+         * Extracts items of the first stack matching the filter, without copying the stacks that are scanned.
+         * The slots are scanned starting at startSlot, wrapping around at the end of the inventory.
+         * Storages without slots use the index of the non-empty stack instead. These indices shift when stacks are emptied,
+         * so the round-robin order is only approximate there.
+         *
+         * @param filter    tested against the stacks in the inventory. The stacks must not be modified or kept.
+         * @param maxCount  the maximum amount of items to extract
+         * @param startSlot the first slot to check
+         * @return the extracted items and their slot, or null if nothing matching could be extracted
+         */
+        default @Nullable SlotExtraction extractFirstMatching(ItemFilter filter, int maxCount, int startSlot) {
+            var slotCount = getSlotCount();
+            if (slotCount == 0) return null;
+            
+            var offset = Math.floorMod(startSlot, slotCount);
+            for (int i = 0; i < slotCount; i++) {
+                var slot = (offset + i) % slotCount;
+                var available = getStackInSlot(slot);
+                if (available.isEmpty() || !filter.test(available)) continue;
+                
+                var extracting = available.copyWithCount(Math.min(available.getCount(), maxCount));
+                var extractedAmount = extractFromSlot(extracting, slot, false);
+                if (extractedAmount > 0)
+                    return new SlotExtraction(extracting.copyWithCount(extractedAmount), slot);
+            }
+            
+            return null;
+        }
+        
         void setStackInSlot(int slot, ItemStack stack);
         
         ItemStack getStackInSlot(int slot);
@@ -66,7 +133,33 @@ public class ItemApi {
         int getSlotCount();
         
         int getSlotLimit(int slot);
+    
+    }
+    
+    /**
+     * Filter for {@link InventoryStorage#extractFirstMatching}. Filters that only depend on the item type can be tested before
+     * a stack is created, e.g. for storages that only expose the item and components of their content.
+     */
+    public interface ItemFilter extends Predicate<ItemStack> {
+        
+        // whether testItem gives the same result as test for all stacks of an item
+        default boolean isItemOnly() {
+            return false;
+        }
         
+        // only called if isItemOnly returns true
+        default boolean testItem(Item item) {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /**
+     * The result of {@link InventoryStorage#extractFirstMatching}.
+     *
+     * @param stack the extracted items
+     * @param slot  the slot they were extracted from
+     */
+    public record SlotExtraction(ItemStack stack, int slot) {
     }
     
     
@@ -0,0 +1,182 @@
+package rearth.belts.blocks;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+// Items on a belt, ordered from the belt start (first) to the belt end (last).
+// All items that move freely travel at the same speed, so they are stored relative to a shared moving origin (headOffset), and
+// advancing them is a single addition. Items that wait in the output queue are at the end of the belt, and store their absolute progress.
+public class BeltItemQueue implements Iterable<ChuteBlockEntity.BeltItem> {
+    
+    // free items are rebased once the origin has moved this far, to keep the float precision of their stored progress
+    private static final double REBASE_THRESHOLD = 1d;
+    
+    private final ArrayDeque<ChuteBlockEntity.BeltItem> items = new ArrayDeque<>();
+    private double headOffset = 0;
+    // number of items at the end of the belt that are in the output queue
+    private int queuedCount = 0;
+    
+    // returns the absolute progress [0-1] of an item on this belt
+    public float getProgress(ChuteBlockEntity.BeltItem item) {
+        return item.queued ? item.progress : (float) (item.progress + headOffset);
+    }
+    
+    public void setProgress(ChuteBlockEntity.BeltItem item, float progress) {
+        item.progress = item.queued ? progress : (float) (progress - headOffset);
+    }
+    
+    public void advance(double delta, double queueSpacing, @Nullable Consumer<ChuteBlockEntity.BeltItem> onQueued) {
+        advance(delta, queueSpacing, onQueued, false);
+    }
+    
+    /**
+     * Moves all free items forward. Items that would reach the end of the output queue stop and join it instead.
+     *
+     * @param delta        the progress each free item moves
+     * @param queueSpacing the progress each queued item takes up
+     * @param onQueued     called for each item that joins the queue during this step
+     * @param snap         whether items joining the queue move up to their slot in it. Needed for large steps (e.g. when catching up
+     *                     missed ticks), otherwise they would stay where they were at the start of the step.
+     */
+    public void advance(double delta, double queueSpacing, @Nullable Consumer<ChuteBlockEntity.BeltItem> onQueued, boolean snap) {
+        
+        // only the queue and the first free item in front of it are visited
+        var iterator = items.descendingIterator();
+        for (int i = 0; i < queuedCount; i++)
+            iterator.next();
+        
+        while (iterator.hasNext()) {
+            var item = iterator.next();
+            var progress = item.progress + headOffset;
+            var queueStart = getQueueStart(queueSpacing);
+            if (progress + delta < queueStart) break;
+            
+            // items already past their slot (e.g. on a full belt) stay where they are
+            item.progress = (float) (snap ? Math.max(progress, queueStart) : progress);
+            item.queued = true;
+            queuedCount++;
+            if (onQueued != null)
+                onQueued.accept(item);
+        }
+        
+        if (queuedCount == items.size()) {
+            // nothing is moving, so the origin can be reset for free
+            headOffset = 0;
+            return;
+        }
+        
+        headOffset += delta;
+        if (headOffset > REBASE_THRESHOLD)
+            rebase();
+    }
+    
+    // the progress at which the next item joins the output queue
+    public double getQueueStart(double queueSpacing) {
+        return 1d - queuedCount * queueSpacing;
+    }
+    
+    // lets all queued items move freely again, e.g. after the first one has been delivered
+    public void releaseQueue() {
+        var iterator = items.descendingIterator();
+        for (int i = 0; i < queuedCount; i++) {
+            var item = iterator.next();
+            item.progress = (float) (item.progress - headOffset);
+            item.queued = false;
+        }
+        queuedCount = 0;
+    }
+    
+    private void rebase() {
+        for (var item : items) {
+            if (!item.queued)
+                item.progress = (float) (item.progress + headOffset);
+        }
+        headOffset = 0;
+    }
+    
+    // adds a free item at the start of the belt
+    public void addFirst(ChuteBlockEntity.BeltItem item, float progress) {
+        if (items.isEmpty())
+            headOffset = 0;
+        item.queued = false;
+        item.progress = (float) (progress - headOffset);
+        items.addFirst(item);
+    }
+    
+    public @Nullable ChuteBlockEntity.BeltItem peekFirst() {
+        return items.peekFirst();
+    }
+    
+    public @Nullable ChuteBlockEntity.BeltItem peekLast() {
+        return items.peekLast();
+    }
+    
+    public ChuteBlockEntity.BeltItem removeLast() {
+        var item = items.removeLast();
+        if (item.queued)
+            queuedCount--;
+        return item;
+    }
+    
+    // removing a queued item releases the queue, the remaining items will queue up again on the next step
+    public boolean removeById(short id) {
+        for (var iterator = items.iterator(); iterator.hasNext(); ) {
+            var item = iterator.next();
+            if (item.id != id) continue;
+            
+            if (item.queued)
+                releaseQueue();
+            iterator.remove();
+            return true;
+        }
+        return false;
+    }
+    
+    public @Nullable ChuteBlockEntity.BeltItem getById(short id) {
+        for (var item : items) {
+            if (item.id == id) return item;
+        }
+        return null;
+    }
+    
+    // replaces all items. The given items use absolute progress, and are free to move
+    public void load(Collection<ChuteBlockEntity.BeltItem> loaded) {
+        items.clear();
+        headOffset = 0;
+        queuedCount = 0;
+        for (var item : loaded) {
+            item.queued = false;
+            items.addLast(item);
+        }
+    }
+    
+    public void clear() {
+        items.clear();
+        headOffset = 0;
+        queuedCount = 0;
+    }
+    
+    public int getQueuedCount() {
+        return queuedCount;
+    }
+    
+    public int size() {
+        return items.size();
+    }
+    
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+    
+    // read only, all changes need to go through the queue to keep the stored progress consistent
+    @Override
+    public @NotNull Iterator<ChuteBlockEntity.BeltItem> iterator() {
+        return Collections.unmodifiableCollection(items).iterator();
+    }
+}
@@ -0,0 +1,218 @@
+package rearth.belts.blocks;
+
+import dev.architectury.event.events.common.LifecycleEvent;
+import dev.architectury.event.events.common.TickEvent;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceArrayList;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import rearth.belts.util.jfr.BeltTickEvent;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Ticks all belts of a server world in a single loop, instead of one block entity ticker per chute.
+// Only chutes that are the source of a belt are registered, belt ends and unused chutes are never ticked on the server.
+public final class BeltNetworkManager {
+    
+    // how often belts notify their belt end that they are still connected
+    private static final int TARGET_REFRESH_INTERVAL = 19;
+    
+    private static final Map<ServerWorld, BeltNetworkManager> MANAGERS = new IdentityHashMap<>();
+    
+    private final ServerWorld world;
+    private final BeltSupportIndex supportIndex = new BeltSupportIndex();
+    // chutes by the position of the inventory behind them, woken up when the content of that inventory changes
+    private final Long2ObjectOpenHashMap<ReferenceArrayList<ChuteBlockEntity>> watchedInventories = new Long2ObjectOpenHashMap<>();
+    private ChuteBlockEntity[] belts = new ChuteBlockEntity[64];
+    private int size = 0;
+    // belts that move in the current tick, reused between ticks
+    private ChuteBlockEntity[] active = new ChuteBlockEntity[64];
+    
+    private BeltNetworkManager(ServerWorld world) {
+        this.world = world;
+    }
+    
+    public static void init() {
+        TickEvent.SERVER_LEVEL_POST.register(world -> {
+            var manager = MANAGERS.get(world);
+            if (manager != null)
+                manager.tick();
+        });
+        
+        LifecycleEvent.SERVER_LEVEL_UNLOAD.register(MANAGERS::remove);
+        LifecycleEvent.SERVER_STOPPED.register(server -> MANAGERS.clear());
+    }
+    
+    public static BeltNetworkManager get(ServerWorld world) {
+        return MANAGERS.computeIfAbsent(world, BeltNetworkManager::new);
+    }
+    
+    // called for every inventory content change in the world, so this is only a map lookup unless a chute is next to the inventory
+    public static void onInventoryChanged(ServerWorld world, BlockPos pos) {
+        var manager = MANAGERS.get(world);
+        if (manager == null || manager.watchedInventories.isEmpty()) return;
+        
+        var chutes = manager.watchedInventories.get(pos.asLong());
+        if (chutes == null) return;
+        
+        // waking a chute doesn't change the watchers, but chutes of unloaded chunks are dropped here
+        for (int i = chutes.size() - 1; i >= 0; i--) {
+            var chute = chutes.get(i);
+            if (chute.isRemoved() || world.getBlockEntity(chute.getPos()) != chute) {
+                chutes.remove(i);
+                continue;
+            }
+            chute.onNeighborContentChanged();
+        }
+        
+        if (chutes.isEmpty())
+            manager.watchedInventories.remove(pos.asLong());
+    }
+    
+    void watchInventory(ChuteBlockEntity chute, BlockPos inventoryPos) {
+        var chutes = watchedInventories.computeIfAbsent(inventoryPos.asLong(), key -> new ReferenceArrayList<>(1));
+        if (!chutes.contains(chute))
+            chutes.add(chute);
+    }
+    
+    void unwatchInventory(ChuteBlockEntity chute, BlockPos inventoryPos) {
+        var chutes = watchedInventories.get(inventoryPos.asLong());
+        if (chutes == null) return;
+        chutes.remove(chute);
+        if (chutes.isEmpty())
+            watchedInventories.remove(inventoryPos.asLong());
+    }
+    
+    // adding an already registered belt does nothing
+    public void add(ChuteBlockEntity belt) {
+        if (belt.networkIndex >= 0) return;
+        
+        if (size == belts.length)
+            belts = Arrays.copyOf(belts, size * 2);
+        
+        belts[size] = belt;
+        belt.networkIndex = size;
+        size++;
+    }
+    
+    // the last belt is moved into the free slot, so the order of the belts is not stable
+    public void remove(ChuteBlockEntity belt) {
+        var index = belt.networkIndex;
+        if (index < 0 || index >= size || belts[index] != belt) return;
+        
+        size--;
+        var last = belts[size];
+        belts[index] = last;
+        last.networkIndex = index;
+        belts[size] = null;
+        belt.networkIndex = -1;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    BeltSupportIndex getSupportIndex() {
+        return supportIndex;
+    }
+    
+    // copy of the registered belts, e.g. for commands
+    public List<ChuteBlockEntity> getBelts() {
+        return List.of(Arrays.copyOf(belts, size));
+    }
+    
+    private void tick() {
+        // frozen through /tick freeze, like block entities. While stepping, shouldTick is true for the stepped ticks.
+        if (!world.getTickManager().shouldTick()) return;
+        
+        var event = new BeltTickEvent();
+        event.begin();
+        var profiler = world.getProfiler();
+        profiler.push("belts");
+        profiler.push("prepare");
+        
+        var time = world.getTime();
+        var refreshTargets = time % TARGET_REFRESH_INTERVAL == 0;
+        
+        // serial phase: drop stale belts, and collect the ones that move this tick
+        if (active.length < size)
+            active = new ChuteBlockEntity[belts.length];
+        var activeCount = 0;
+        
+        for (int i = 0; i < size; ) {
+            var belt = belts[i];
+            var pos = belt.getPos();
+            
+            // the chunk has been unloaded, a new block entity will register once it is loaded again
+            if (belt.isRemoved() || belt.getWorld() != world || !world.isChunkLoaded(pos)) {
+                remove(belt);
+                continue;
+            }
+            
+            // loaded, but outside the simulation distance. The missed ticks are caught up once simulated again.
+            if (!world.shouldTickBlockPos(pos)) {
+                i++;
+                continue;
+            }
+            
+            // the belt end is not loaded, the belt pauses until it is
+            if (belt.isSuspended(world)) {
+                i++;
+                continue;
+            }
+            
+            // sleeping belts only keep their belt end informed
+            if (belt.isSleeping(time)) {
+                belt.sleepTick(time);
+                if (refreshTargets)
+                    belt.assignTargetState(world);
+                i++;
+                continue;
+            }
+            
+            // the belt lost its target, and no longer needs to be ticked
+            if (!belt.prepareServerTick(world)) {
+                remove(belt);
+                continue;
+            }
+            
+            if (belt.hasBeltData())
+                active[activeCount++] = belt;
+            
+            i++;
+        }
+        
+        // movement phase: belts only touch their own items
+        profiler.swap("move");
+        for (int i = 0; i < activeCount; i++)
+            active[i].moveItemsOnBelt();
+        
+        // inventory access and network sync
+        profiler.swap("finish");
+        var recordItems = event.isEnabled();
+        var items = 0;
+        for (int i = 0; i < activeCount; i++) {
+            var belt = active[i];
+            belt.finishServerTick(world);
+            if (refreshTargets)
+                belt.assignTargetState(world);
+            if (recordItems)
+                items += belt.getItemCount();
+            active[i] = null;
+        }
+        
+        profiler.pop();
+        profiler.pop();
+        
+        if (recordItems) {
+            event.world = world.getRegistryKey().getValue().toString();
+            event.belts = size;
+            event.activeBelts = activeCount;
+            event.items = items;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package rearth.belts.blocks;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceArrayList;
+import net.minecraft.block.HorizontalFacingBlock;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.World;
+import org.jetbrains.annotations.Nullable;
+import rearth.belts.BlockContent;
+
+import java.util.List;
+
+// Maps the positions of conveyor supports to the belts routed through them, and caches the support facings.
+// Supports notify the index when they are placed, broken or rotated, which rebuilds only the affected belts.
+// One index per server world, owned by the BeltNetworkManager. Only used from the server thread.
+final class BeltSupportIndex {
+    
+    private final Long2ObjectOpenHashMap<Entry> entries = new Long2ObjectOpenHashMap<>();
+    // the support positions each belt is currently registered at
+    private final Reference2ObjectOpenHashMap<ChuteBlockEntity, long[]> registered = new Reference2ObjectOpenHashMap<>();
+    
+    // replaces the supports the belt is registered at. Only the changed positions are touched, so supports that are still used keep their cached facing.
+    void update(ChuteBlockEntity belt, List<BlockPos> supports) {
+        var previous = registered.get(belt);
+        if (supports.isEmpty()) {
+            remove(belt);
+            return;
+        }
+        
+        var positions = new long[supports.size()];
+        for (int i = 0; i < positions.length; i++) {
+            var pos = supports.get(i).asLong();
+            positions[i] = pos;
+            if (previous == null || !contains(previous, pos))
+                entries.computeIfAbsent(pos, key -> new Entry()).belts.add(belt);
+        }
+        
+        if (previous != null) {
+            for (var pos : previous) {
+                if (!contains(positions, pos))
+                    removeFromEntry(belt, pos);
+            }
+        }
+        
+        registered.put(belt, positions);
+    }
+    
+    void remove(ChuteBlockEntity belt) {
+        var positions = registered.remove(belt);
+        if (positions == null) return;
+        
+        for (var pos : positions)
+            removeFromEntry(belt, pos);
+    }
+    
+    private void removeFromEntry(ChuteBlockEntity belt, long pos) {
+        var entry = entries.get(pos);
+        if (entry == null) return;
+        entry.belts.remove(belt);
+        if (entry.belts.isEmpty())
+            entries.remove(pos);
+    }
+    
+    // belts only have a few supports, a linear search is faster than a set
+    private static boolean contains(long[] positions, long pos) {
+        for (var candidate : positions) {
+            if (candidate == pos) return true;
+        }
+        return false;
+    }
+    
+    // the facing of the support at the given position, or null if there is no support. Cached for indexed positions.
+    @Nullable
+    Direction getFacing(World world, BlockPos pos) {
+        var entry = entries.get(pos.asLong());
+        if (entry != null && entry.cached)
+            return entry.facing;
+        
+        var state = world.getBlockState(pos);
+        var facing = state.isOf(BlockContent.CONVEYOR_SUPPORT_BLOCK.get()) ? state.get(HorizontalFacingBlock.FACING) : null;
+        if (entry != null) {
+            entry.facing = facing;
+            entry.cached = true;
+        }
+        return facing;
+    }
+    
+    // called by the support block when it is placed, broken or rotated
+    void onSupportChanged(BlockPos pos) {
+        var entry = entries.get(pos.asLong());
+        if (entry == null) return;
+        
+        entry.cached = false;
+        // rebuilding a belt registers it again, so the list is copied first
+        for (var belt : entry.belts.toArray(ChuteBlockEntity[]::new))
+            belt.onSupportChanged();
+    }
+    
+    private static final class Entry {
+        
+        private final ReferenceArrayList<ChuteBlockEntity> belts = new ReferenceArrayList<>(1);
+        private @Nullable Direction facing;
+        private boolean cached;
+    }
+}
@@ -0,0 +1,51 @@
+package rearth.belts.blocks;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+
+import java.util.Locale;
+
+// Throughput tiers of a belt, raised with upgrade items on the chute. Only holds the default values, the values in use are
+// loaded from the server config (BeltsConfig). The defaults of BASIC match the original belt.
+public enum BeltTier {
+    BASIC(new Settings(1f, 26, 64, 0.8f)),
+    FAST(new Settings(2f, 10, 64, 0.6f)),
+    EXPRESS(new Settings(4f, 5, 64, 0.5f));
+    
+    private final Settings defaults;
+    
+    BeltTier(Settings defaults) {
+        this.defaults = defaults;
+    }
+    
+    public Settings getDefaults() {
+        return defaults;
+    }
+    
+    public String getConfigName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+    
+    // unknown names (e.g. from removed tiers) fall back to BASIC
+    public static BeltTier byName(String name) {
+        for (var tier : values()) {
+            if (tier.name().equals(name)) return tier;
+        }
+        return BASIC;
+    }
+    
+    // speed: movement speed of the items, in blocks per second
+    // extractionInterval: ticks between two extractions from the source inventory
+    // stackSize: maximum amount of items extracted at once
+    // squashFactor: distance of the items waiting in the output queue, in blocks
+    public record Settings(float speed, int extractionInterval, int stackSize, float squashFactor) {
+        
+        public static final PacketCodec<ByteBuf, Settings> PACKET_CODEC = PacketCodec.tuple(
+          PacketCodecs.FLOAT, Settings::speed,
+          PacketCodecs.VAR_INT, Settings::extractionInterval,
+          PacketCodecs.VAR_INT, Settings::stackSize,
+          PacketCodecs.FLOAT, Settings::squashFactor,
+          Settings::new);
+    }
+}
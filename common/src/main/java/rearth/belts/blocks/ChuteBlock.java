@@ -29,6 +29,7 @@ import net.minecraft.world.BlockView;
 import net.minecraft.world.World;
 import org.jetbrains.annotations.Nullable;
 import rearth.belts.BlockEntitiesContent;
+import rearth.belts.items.BeltUpgradeItem;
 import rearth.belts.util.MathHelpers;
 
 import java.util.HashMap;
@@ -59,6 +60,8 @@ public class ChuteBlock extends HorizontalFacingBlock implements BlockEntityProv
         if (candidate.isPresent()) {
             var entity = candidate.get();
             if (!entity.isUsed()) return super.onUseWithItem(stack, state, world, pos, player, hand, hit);
+            // upgrades are applied by the item itself
+            if (stack.getItem() instanceof BeltUpgradeItem) return ItemActionResult.SKIP_DEFAULT_BLOCK_INTERACTION;
             if (!world.isClient)
                 entity.assignFilterItem(stack, player);
             return ItemActionResult.SUCCESS;
@@ -122,12 +125,23 @@ public class ChuteBlock extends HorizontalFacingBlock implements BlockEntityProv
     
     @Override
     public @Nullable <T extends BlockEntity> BlockEntityTicker<T> getTicker(World world, BlockState state, BlockEntityType<T> type) {
+        // belts are ticked by the BeltNetworkManager on the server
+        if (!world.isClient) return null;
+        
         return ((world1, pos, state1, blockEntity) -> {
             if (blockEntity instanceof ChuteBlockEntity chuteBlockEntity)
                 chuteBlockEntity.tick(world1, pos, state1, chuteBlockEntity);
         });
     }
     
+    @Override
+    protected void neighborUpdate(BlockState state, World world, BlockPos pos, Block sourceBlock, BlockPos sourcePos, boolean notify) {
+        super.neighborUpdate(state, world, pos, sourceBlock, sourcePos, notify);
+        
+        if (world.isClient) return;
+        world.getBlockEntity(pos, BlockEntitiesContent.CHUTE_BLOCK.get()).ifPresent(ChuteBlockEntity::onNeighborUpdate);
+    }
+    
     @Override
     public BlockState onBreak(World world, BlockPos pos, BlockState state, PlayerEntity player) {
         
@@ -147,6 +161,7 @@ public class ChuteBlock extends HorizontalFacingBlock implements BlockEntityProv
         var showExtra = Screen.hasControlDown();
         if (showExtra) {
             tooltip.add(Text.translatable("block.belts.chute.tooltip.1").formatted(Formatting.GRAY));
+            tooltip.add(Text.translatable("block.belts.chute.tooltip.2").formatted(Formatting.GRAY));
             if (Platform.isModLoaded("ftbfiltersystem"))
                 tooltip.add(Text.translatable("block.belts.chute.tooltip.ftbfilters").formatted(Formatting.GRAY));
         }
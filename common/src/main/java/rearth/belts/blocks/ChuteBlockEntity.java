@@ -1,7 +1,5 @@
 package rearth.belts.blocks;
 
-import dev.architectury.platform.Platform;
-import dev.ftb.mods.ftbfiltersystem.api.FTBFilterSystemAPI;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.HorizontalFacingBlock;
 import net.minecraft.block.entity.BlockEntity;
@@ -20,30 +18,44 @@ import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Text;
 import net.minecraft.util.Pair;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 import org.jetbrains.annotations.Nullable;
+import org.joml.Vector3d;
+import rearth.belts.BeltsConfig;
 import rearth.belts.BlockContent;
 import rearth.belts.BlockEntitiesContent;
 import rearth.belts.ItemContent;
+import rearth.belts.api.item.BlockItemApi;
 import rearth.belts.api.item.ItemApi;
+import rearth.belts.client.renderers.BeltMesh;
 import rearth.belts.client.renderers.ChuteBeltRenderer;
+import rearth.belts.network.BeltSyncPayload;
+import rearth.belts.network.BeltsNetworking;
+import rearth.belts.util.MathHelpers;
 import rearth.belts.util.SplineUtil;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class ChuteBlockEntity extends BlockEntity implements BlockEntityTicker<ChuteBlockEntity> {
     
+    // the longest sleep time is the extraction interval times 2^MAX_SLEEP_LEVEL, about 10 seconds
+    private static final int MAX_SLEEP_LEVEL = 3;
+    // scans skipped in a row because the source version didn't change. Some inventories change without updating it, so they are still rescanned now and then.
+    private static final int MAX_SKIPPED_SCANS = 8;
+    // ticks between lookups of the next belt in a chain, while there is none
+    private static final int NEXT_BELT_LOOKUP_INTERVAL = 20;
+    
     // everything in this section is synced to the client
     private BlockPos target;
     private List<BlockPos> midPoints = new ArrayList<>();
-    // items that are in transit, and not in the queue yet. Key is the progress [0-1] along the current path;
+    // items that are in transit or waiting in the output queue, with their progress [0-1] along the current path;
     // first = at begin of transit path, near extraction point. Last = near target.
-    private final Deque<BeltItem> movingItems = new ArrayDeque<>();
-    
-    // number of items actively waiting / blocked by the output side of the belt.
-    private int outputQueue = 0;
+    private final BeltItemQueue movingItems = new BeltItemQueue();
     
     // this is calculated on both the client and server
     private BeltData beltData;
@@ -54,55 +66,283 @@ public class ChuteBlockEntity extends BlockEntity implements BlockEntityTicker<C
     
     // used for filtering. Optionally works with create and ftb filters.
     public ItemStack filteredItem = ItemStack.EMPTY;
+    // compiled from the filter item on first use. Only used on the server.
+    private ChuteFilter compiledFilter;
+    
+    // set with upgrade items on the source chute of a belt
+    private BeltTier tier = BeltTier.BASIC;
+    // client only, the tier values of the server. The client config might differ.
+    private float syncedSpeed;
+    private float syncedSquashFactor;
     
     // client only data, used for rendering
-    public ChuteBeltRenderer.Quad[] renderedModel;
-    public Map<Short, Vec3d> lastRenderedPositions = new HashMap<>();
+    // indexed by the mesh level of detail, created on first use
+    public ChuteBeltRenderer.Quad[][] renderedModels;
+    public BeltMesh[] bakedMeshes;
     
+    // set when the full belt state needs to be resent (e.g. changed target or filter)
     private boolean networkDirty = false;
+    private final Consumer<BeltItem> itemQueuedListener = this::onItemQueued;
+    
+    // cached inventory lookups, only used on the server. Reset on neighbor updates.
+    private BlockItemApi.Cache sourceStorageCache;
+    private BlockItemApi.Cache targetStorageCache;
+    // item changes of the current tick, sent to the client as a delta. Item movement itself is not synced, the client extrapolates it.
+    private final List<BeltSyncPayload.Event> pendingSyncEvents = new ArrayList<>();
+    // slot in the BeltNetworkManager of the world, or -1 if not registered. Only used on the server.
+    int networkIndex = -1;
+    
+    // Belts that can't move anything go to sleep, until a neighbor changes or the sleep time runs out.
+    // The sleep time doubles each time the belt is still stuck after waking up. Only used on the server, not saved.
+    private long sleepUntil = 0;
+    private int sleepLevel = 0;
+    private boolean extractionFailed = false;
+    private boolean forceExtraction = false;
+    
+    // slot of the source inventory where the next extraction scan starts
+    private int extractionCursor = 0;
+    // set when the last scan found nothing to extract, together with the change version and count of the source inventory at that time. Not saved.
+    private boolean emptyScan = false;
+    private long emptyScanVersion = -1;
+    private long emptyScanChangeCount = -1;
+    private int skippedScans = 0;
+    // the belt that starts at the target inventory of this belt, if any. Items are handed to it directly. Only used on the server.
+    private @Nullable ChuteBlockEntity nextBelt;
+    private long nextBeltLookupTime = 0;
+    // the inventory position registered in the BeltNetworkManager for content change wake ups. Only used on the server.
+    private @Nullable BlockPos watchedInventory;
+    
+    // game time of the last simulated tick, 0 if unknown. Ticks missed while unloaded or suspended are caught up in one step.
+    private long lastSimulatedTime = 0;
+    
+    // throughput statistics for the /belts stats command, counted since statsSince. Only used on the server, not saved.
+    private long statsSince = -1;
+    private long itemsExtracted;
+    private long itemsDelivered;
+    private long blockedTicks;
+    private long failedExtractions;
+    private long failedInserts;
     
     public ChuteBlockEntity(BlockPos pos, BlockState state) {
         super(BlockEntitiesContent.CHUTE_BLOCK.get(), pos, state);
     }
     
+    // client side tick. The client only predicts the item movement, all insertions and removals come from the server
     @Override
     public void tick(World world, BlockPos pos, BlockState state, ChuteBlockEntity blockEntity) {
-        if (world == null) return;
+        if (world == null || !hasTarget()) return;
         
-        if (target == null || target.equals(BlockPos.ORIGIN)) {
-            if (!world.isClient && !movingItems.isEmpty()) {
+        if (!updateBeltData()) return;
+        
+        world.getProfiler().push("beltPrediction");
+        moveItemsOnBelt();
+        world.getProfiler().pop();
+    }
+    
+    // The server tick is split into phases by the BeltNetworkManager. All belts first validate their state, then move their items,
+    // then do their inventory access and network sync.
+    
+    // first server tick phase. Returns false once this chute is no longer the source of a belt, and true if the items should be moved.
+    // The content of invalid belts is dropped on the next tick.
+    boolean prepareServerTick(ServerWorld world) {
+        
+        if (!hasTarget()) {
+            if (!movingItems.isEmpty()) {
                 dropContent(world, pos);
+                world.getChunkManager().markForUpdate(pos);
             }
+            return false;
+        }
+        
+        // woken up by the timer, check the source right away instead of waiting for the next extraction interval
+        if (sleepUntil != 0) {
+            sleepUntil = 0;
+            forceExtraction = true;
+        }
+        
+        updateBeltData();
+        
+        var time = world.getTime();
+        if (statsSince < 0)
+            statsSince = time;
+        if (beltData != null && lastSimulatedTime > 0 && time - lastSimulatedTime > 1)
+            catchUp(time - lastSimulatedTime - 1);
+        lastSimulatedTime = time;
+        
+        return true;
+    }
+    
+    // a belt with its end in an unloaded chunk (or outside the simulation distance) pauses, instead of losing its target.
+    // The midpoints are only needed to create the belt data.
+    boolean isSuspended(ServerWorld world) {
+        if (!hasTarget()) return false;
+        if (!world.isChunkLoaded(target) || !world.shouldTickBlockPos(target)) return true;
+        
+        if (beltData == null) {
+            for (var midPoint : midPoints) {
+                if (!world.isChunkLoaded(midPoint)) return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    // called instead of the tick phases while sleeping. Sleeping belts don't move, so the time they slept is not caught up.
+    void sleepTick(long time) {
+        lastSimulatedTime = time;
+        if (movingItems.getQueuedCount() > 0)
+            blockedTicks++;
+    }
+    
+    // Fast-forwards the given amount of missed ticks in one step. The items move as far as they would have, and the target takes as many of
+    // the queued items as it accepts (at most one per tick). Nothing is extracted from the source. The client gets a full resync afterward.
+    private void catchUp(long ticks) {
+        movingItems.advance(getProgressDelta() * ticks, getQueueSpacing(), null, true);
+        
+        var delivered = 0;
+        while (delivered < ticks && movingItems.getQueuedCount() > 0) {
+            var item = movingItems.peekLast();
+            if (!deliver(item)) break;
+            itemsDelivered += item.stack.getCount();
+            movingItems.removeLast();
+            delivered++;
+        }
+        
+        if (delivered > 0)
+            movingItems.releaseQueue();
+        
+        networkDirty = true;
+        this.markDirty();
+    }
+    
+    // last server tick phase, after all belts have been moved
+    // filter evaluation happens during the extraction scan, and is part of the extraction section
+    void finishServerTick(ServerWorld world) {
+        if (movingItems.getQueuedCount() > 0)
+            blockedTicks++;
+        
+        var profiler = world.getProfiler();
+        profiler.push("insertion");
+        var delivered = deliverQueuedItem();
+        profiler.swap("extraction");
+        loadItemsOnBelt();
+        profiler.swap("sync");
+        sendNetworkUpdates(world);
+        profiler.pop();
+        updateSleepState(delivered);
+    }
+    
+    // a belt is stuck if no item moves, the target doesn't accept the first item, and the source had nothing to extract.
+    // Chained belts never sleep, the next belt moving its items doesn't cause a neighbor update that would wake this one up.
+    private void updateSleepState(boolean delivered) {
+        var stuck = !delivered && extractionFailed && movingItems.getQueuedCount() == movingItems.size() && getNextBelt() == null;
+        if (!stuck) {
+            sleepLevel = 0;
             return;
         }
         
+        sleepUntil = world.getTime() + ((long) getExtractionInterval() << sleepLevel);
+        sleepLevel = Math.min(sleepLevel + 1, MAX_SLEEP_LEVEL);
+    }
+    
+    boolean isSleeping(long time) {
+        return time < sleepUntil;
+    }
+    
+    // called when the source or target inventory might have changed. The sleep time starts over.
+    public void wakeUp() {
+        sleepUntil = 0;
+        sleepLevel = 0;
+    }
+    
+    boolean hasBeltData() {
+        return beltData != null;
+    }
+    
+    // creates the belt data if missing. Returns false if the belt path is invalid, in which case the target is removed.
+    private boolean updateBeltData() {
+        
         if (beltData == null) {
-            beltData = BeltData.create(this);
+            rebuildBeltData();
             if (world instanceof ServerWorld serverWorld)
                 serverWorld.getChunkManager().markForUpdate(pos);
         }
         
+        // the client might just not have the belt end loaded, the server resyncs invalid belts anyway
         if (beltData == null) {
-            target = null;
-            midPoints = new ArrayList<>();
-            return;
+            if (world instanceof ServerWorld)
+                clearTarget();
+            return false;
         }
         
-        if (world.isClient) return;
+        return true;
+    }
+    
+    // on the server, valid belts are registered at their supports, so changes of the supports rebuild the belt data through the index
+    private void rebuildBeltData() {
+        beltData = BeltData.create(this);
+        if (beltData != null && world instanceof ServerWorld serverWorld)
+            BeltNetworkManager.get(serverWorld).getSupportIndex().update(this, midPoints);
+    }
+    
+    private boolean hasTarget() {
+        return target != null && !target.equals(BlockPos.ORIGIN);
+    }
+    
+    // registers this chute in the BeltNetworkManager of its world, if it is the source of a belt
+    private void updateNetworkRegistration() {
+        if (world instanceof ServerWorld serverWorld && hasTarget() && !isRemoved())
+            BeltNetworkManager.get(serverWorld).add(this);
+    }
+    
+    private void sendNetworkUpdates(ServerWorld serverWorld) {
         
-        moveItemsOnBelt();
-        loadItemsOnBelt();
+        if (networkDirty) {
+            // full resync, this already contains all pending changes
+            serverWorld.getChunkManager().markForUpdate(pos);
+            networkDirty = false;
+            pendingSyncEvents.clear();
+            return;
+        }
         
-        // refresh target
-        if (world.getTime() % 19 == 0)
-            assignTargetState(world);
+        if (pendingSyncEvents.isEmpty()) return;
         
+        var payload = new BeltSyncPayload(pos, serverWorld.getTime(), computeItemChecksum(), List.copyOf(pendingSyncEvents));
+        pendingSyncEvents.clear();
+        BeltsNetworking.sendToTracking(serverWorld, pos, payload);
+    }
+    
+    // applies a delta update from the server. Returns false if the resulting state doesn't match the server, in which case a full resync is needed.
+    public boolean applySyncPayload(BeltSyncPayload payload) {
         
-        if (networkDirty && world instanceof ServerWorld serverWorld) {
-            serverWorld.getChunkManager().markForUpdate(pos);
-            networkDirty = false;
+        for (var event : payload.events()) {
+            switch (event.type()) {
+                case INSERT -> {
+                    // catch up on the ticks the packet took to arrive
+                    var progress = event.progress();
+                    if (beltData != null && world != null)
+                        progress += (float) (getProgressDelta() * Math.max(0, world.getTime() - payload.tick()));
+                    movingItems.addFirst(new BeltItem(event.id(), event.stack()), progress);
+                }
+                case REMOVE -> movingItems.removeById(event.id());
+                case BLOCKED -> {
+                    var item = movingItems.getById(event.id());
+                    if (item != null)
+                        movingItems.setProgress(item, event.progress());
+                }
+            }
         }
         
+        return computeItemChecksum() == payload.checksum();
+    }
+    
+    // only covers the order of the items on the belt, not their progress (which is extrapolated on the client)
+    private int computeItemChecksum() {
+        var result = movingItems.size();
+        for (var item : movingItems) {
+            result = 31 * result + item.id;
+        }
+        return result;
     }
     
     public void dropContent(World world, BlockPos pos) {
@@ -113,7 +353,7 @@ public class ChuteBlockEntity extends BlockEntity implements BlockEntityTicker<C
             if (sourceEntityCandidate.isPresent() && sourceEntityCandidate.get() != this) {
                 var source = sourceEntityCandidate.get();
                 source.dropContent(world, pos);
-                source.target = null;
+                source.clearTarget();
                 serverWorld.getChunkManager().markForUpdate(this.sourceBeltPos);
                 source.networkDirty = true;
                 source.markDirty();
@@ -133,120 +373,306 @@ public class ChuteBlockEntity extends BlockEntity implements BlockEntityTicker<C
             world.spawnEntity(new ItemEntity(world, spawnAt.x, spawnAt.y, spawnAt.z, stack));
         }
         
+        dropUpgrade(world, pos);
         movingItems.clear();
     }
     
+    // the upgrade belongs to the belt, not the chute. It is dropped whenever the belt is removed, even if it is empty.
+    private void dropUpgrade(World world, BlockPos pos) {
+        var upgradeStack = getUpgradeStack(tier);
+        if (upgradeStack.isEmpty()) return;
+        
+        var spawnAt = pos.toCenterPos();
+        world.spawnEntity(new ItemEntity(world, spawnAt.x, spawnAt.y, spawnAt.z, upgradeStack));
+        tier = BeltTier.BASIC;
+        this.markDirty();
+    }
+    
+    // removes the belt from this chute on the server. Items still on the belt are dropped on the next tick.
+    private void clearTarget() {
+        target = null;
+        midPoints = new ArrayList<>();
+        dropUpgrade(world, pos);
+        networkDirty = true;
+        this.markDirty();
+    }
+    
     // notifies the belt end entity that the current entity is the sender to it
-    private void assignTargetState(World world) {
+    void assignTargetState(World world) {
+        if (!world.isChunkLoaded(target)) return;
+        
         var beltTargetCandidate = world.getBlockEntity(target, BlockEntitiesContent.CHUTE_BLOCK.get());
         if (beltTargetCandidate.isPresent()) {
             beltTargetCandidate.get().lastTargetedTime = world.getTime();
             beltTargetCandidate.get().sourceBeltPos = pos;
         } else {
-            target = null;
-            midPoints = new ArrayList<>();
+            clearTarget();
         }
     }
     
-    private void moveItemsOnBelt() {
-        
+    private double getProgressDelta() {
         var beltLength = beltData.totalLength();
-        var beltSpeed = 1f;
-        var progressDelta = beltSpeed / beltLength / 20f;
+        var beltSpeed = syncedSpeed > 0 ? syncedSpeed : BeltsConfig.getTierSettings(tier).speed();
+        return beltSpeed / beltLength / 20f;
+    }
+    
+    // free items all move together, only the output queue needs to be checked per item
+    void moveItemsOnBelt() {
+        movingItems.advance(getProgressDelta(), getQueueSpacing(), world.isClient ? null : itemQueuedListener);
+    }
+    
+    // returns true if the first item in the queue has been inserted into the target
+    private boolean deliverQueuedItem() {
+        if (movingItems.getQueuedCount() == 0) return false;
         
-        boolean unloaded = false;
-        outputQueue = 0;
+        // try to insert last item (if its in queue). Gets put into queue when the end is reached.
+        var deliveredItem = movingItems.peekLast();
+        if (deliver(deliveredItem)) {
+            itemsDelivered += deliveredItem.stack.getCount();
+            movingItems.removeLast();
+            movingItems.releaseQueue();
+            pendingSyncEvents.add(BeltSyncPayload.Event.remove(deliveredItem.id));
+            return true;
+        }
         
-        for (var pair : movingItems.reversed()) {
-            var itemProgress = pair.progress;
-            var newProgress = itemProgress + progressDelta;
-            
-            var inQueue = newProgress >= getPotentialQueueStart();
-            
-            // only accept new position if not in queue
-            if (inQueue) {
-                outputQueue++;
-            } else {
-                pair.progress = (float) newProgress;
-                networkDirty = true;
-            }
-            
-            // try to insert last item (if its in queue). Gets put into queue when the end is reached.
-            if (inQueue && outputQueue == 1) {
-                var conveyorEndEntityCandidate = world.getBlockEntity(target, BlockEntitiesContent.CHUTE_BLOCK.get());
-                if (conveyorEndEntityCandidate.isEmpty()) continue;
-                var conveyorEndEntity = conveyorEndEntityCandidate.get();
-                var targetInv = ItemApi.BLOCK.find(world, target.add(conveyorEndEntity.getOwnFacing().getOpposite().getVector()), null, null, conveyorEndEntity.getOwnFacing());
-                if (targetInv == null) continue;
-                
-                var insertionStack = pair.stack;
-                var insertedAmount = targetInv.insert(insertionStack, true);
-                if (insertedAmount == insertionStack.getCount()) {
-                    targetInv.insert(insertionStack, false);
-                    outputQueue = 0;    // reset queue
-                    unloaded = true;
-                    networkDirty = true;
-                }
-            }
+        failedInserts++;
+        return false;
+    }
+    
+    // passes the item to the next belt, or inserts it into the target inventory
+    private boolean deliver(BeltItem item) {
+        if (handOffToNextBelt(item)) return true;
+        
+        var targetInv = getTargetStorage();
+        return targetInv != null && targetInv.insertExact(item.stack);
+    }
+    
+    // chained belts skip the inventory between them. The distance the item would have moved past the belt end is carried over.
+    private boolean handOffToNextBelt(BeltItem item) {
+        var next = getNextBelt();
+        if (next == null) return false;
+        
+        var overshoot = Math.max(0, movingItems.getProgress(item) + getProgressDelta() - 1) * beltData.totalLength();
+        return next.acceptHandoff(item.stack, overshoot);
+    }
+    
+    // takes an item from a belt that ends at the source inventory of this belt. Returns false if it doesn't pass the filter or there is no space at the belt start.
+    private boolean acceptHandoff(ItemStack stack, double distance) {
+        if (beltData == null || stack.getCount() > BeltsConfig.getTierSettings(tier).stackSize() || !getFilter().test(stack)) return false;
+        
+        var queueStart = getPotentialQueueStart();
+        if (queueStart < 0) return false;
+        var progress = (float) Math.min(distance / beltData.totalLength(), queueStart);
+        
+        // keep at least the queue spacing to the last item that entered the belt
+        var first = movingItems.peekFirst();
+        if (first != null && movingItems.getProgress(first) - progress < getQueueSpacing()) return false;
+        
+        var id = (short) world.random.nextBetween(Short.MIN_VALUE, Short.MAX_VALUE);
+        movingItems.addFirst(new BeltItem(id, stack), progress);
+        pendingSyncEvents.add(BeltSyncPayload.Event.insert(id, progress, stack));
+        wakeUp();
+        this.markDirty();
+        return true;
+    }
+    
+    // the next belt either starts at a chute taking directly from the chute this belt ends in, or next to a plain container between both belts.
+    // Chutes can be placed there without a block update reaching this belt, so the lookup is repeated periodically while there is no next belt.
+    private @Nullable ChuteBlockEntity getNextBelt() {
+        if (nextBelt != null && (nextBelt.isRemoved() || !nextBelt.hasTarget()))
+            nextBelt = null;
+        
+        if (nextBelt == null && world.getTime() >= nextBeltLookupTime) {
+            nextBeltLookupTime = world.getTime() + NEXT_BELT_LOOKUP_INTERVAL;
+            nextBelt = findNextBelt();
         }
         
-        if (unloaded)
-            movingItems.removeLast();
+        return nextBelt;
+    }
+    
+    private @Nullable ChuteBlockEntity findNextBelt() {
+        var targetChute = world.getBlockEntity(target, BlockEntitiesContent.CHUTE_BLOCK.get());
+        if (targetChute.isEmpty()) return null;
+        var inventoryPos = target.offset(targetChute.get().getOwnFacing().getOpposite());
+        if (!world.isChunkLoaded(inventoryPos)) return null;
         
+        // explicit link, the end chute points into the start chute of the next belt
+        var linked = world.getBlockEntity(inventoryPos, BlockEntitiesContent.CHUTE_BLOCK.get());
+        if (linked.isPresent()) {
+            var candidate = linked.get();
+            var linkedSource = inventoryPos.offset(candidate.getOwnFacing().getOpposite());
+            return candidate != this && candidate.hasTarget() && linkedSource.equals(target) ? candidate : null;
+        }
+        
+        // only containers that store items unchanged can be skipped. Machines (e.g. furnaces) need to get the items, and may
+        // have side specific insert/extract rules.
+        if (!world.getBlockState(inventoryPos).isIn(BlockContent.PASS_THROUGH_CONTAINERS)) return null;
+        
+        for (var direction : Direction.Type.HORIZONTAL) {
+            var candidatePos = inventoryPos.offset(direction);
+            if (candidatePos.equals(pos) || !world.isChunkLoaded(candidatePos)) continue;
+            
+            var candidate = world.getBlockEntity(candidatePos, BlockEntitiesContent.CHUTE_BLOCK.get());
+            if (candidate.isPresent() && candidate.get().getOwnFacing() == direction && candidate.get().hasTarget())
+                return candidate.get();
+        }
+        
+        return null;
+    }
+    
+    // the final resting position is sent once, to correct any drift of the client side prediction
+    private void onItemQueued(BeltItem item) {
+        pendingSyncEvents.add(BeltSyncPayload.Event.blocked(item.id, item.progress));
     }
     
     @SuppressWarnings("DataFlowIssue")
     private void loadItemsOnBelt() {
-        var extractionInterval = (int) (20 / 0.8f) + 1;
         var extractionOffset = pos.asLong();
         
-        if ((world.getTime() + extractionOffset) % extractionInterval != 0) return;
+        if (!forceExtraction && (world.getTime() + extractionOffset) % getExtractionInterval() != 0) return;
+        forceExtraction = false;
         
+        extractionFailed = true;
         if (getPotentialQueueStart() < 0) return;
         
-        var source = ItemApi.BLOCK.find(world, pos.add(getOwnFacing().getOpposite().getVector()), null, null, getOwnFacing());
+        var source = getSourceStorage();
         if (source != null) {
-            // try extracting first stack
-            ItemStack extracted = null;
-            for (int i = 0; i < source.getSlotCount(); i++) {
-                var extractingStack = source.getStackInSlot(i).copy();
-                if (extractingStack.isEmpty()) continue;
-                if (!stackMatchesFilter(extractingStack)) continue;
-                extractingStack.setCount(Math.min(extractingStack.getCount(), 64));
-                var extractedAmount = source.extract(extractingStack, false);
-                if (extractedAmount > 0) {
-                    extracted = extractingStack.copyWithCount(extractedAmount);
-                    break;
-                }
+            // nothing matched last time, and the source hasn't changed since. Untracked inventories are always scanned.
+            var version = source.getChangeVersion();
+            var changeCount = source.getChangeCount();
+            var tracked = version != -1 || changeCount != -1;
+            if (tracked && emptyScan && version == emptyScanVersion && changeCount == emptyScanChangeCount && skippedScans < MAX_SKIPPED_SCANS) {
+                skippedScans++;
+                failedExtractions++;
+                return;
             }
+            skippedScans = 0;
             
-            if (extracted != null) {
+            // the scan continues after the slot of the last extraction, so large inventories are emptied round-robin
+            var extraction = source.extractFirstMatching(getFilter(), BeltsConfig.getTierSettings(tier).stackSize(), extractionCursor);
+            emptyScan = extraction == null;
+            emptyScanVersion = version;
+            emptyScanChangeCount = changeCount;
+            if (extraction != null) {
+                var extracted = extraction.stack();
+                extractionCursor = extraction.slot() + 1;
                 var id = (short) world.random.nextBetween(Short.MIN_VALUE, Short.MAX_VALUE);
-                movingItems.addFirst(new BeltItem(id, extracted));
+                movingItems.addFirst(new BeltItem(id, extracted), 0);
                 this.markDirty();
-                networkDirty = true;
+                pendingSyncEvents.add(BeltSyncPayload.Event.insert(id, 0, extracted));
+                itemsExtracted += extracted.getCount();
+                extractionFailed = false;
             }
         }
+        
+        if (extractionFailed)
+            failedExtractions++;
+    }
+    
+    private int getExtractionInterval() {
+        return BeltsConfig.getTierSettings(tier).extractionInterval();
+    }
+    
+    private @Nullable ItemApi.InventoryStorage getSourceStorage() {
+        if (sourceStorageCache == null)
+            sourceStorageCache = ItemApi.BLOCK.createCache((ServerWorld) world, pos.add(getOwnFacing().getOpposite().getVector()), getOwnFacing());
+        return sourceStorageCache.find();
+    }
+    
+    // the target inventory is the one behind the chute at the end of the belt
+    private @Nullable ItemApi.InventoryStorage getTargetStorage() {
+        if (targetStorageCache == null) {
+            var conveyorEndEntityCandidate = world.getBlockEntity(target, BlockEntitiesContent.CHUTE_BLOCK.get());
+            if (conveyorEndEntityCandidate.isEmpty()) return null;
+            var endFacing = conveyorEndEntityCandidate.get().getOwnFacing();
+            targetStorageCache = ItemApi.BLOCK.createCache((ServerWorld) world, target.add(endFacing.getOpposite().getVector()), endFacing);
+        }
+        return targetStorageCache.find();
     }
     
-    private boolean stackMatchesFilter(ItemStack stack) {
-        if (filteredItem.isEmpty()) return true;
+    public void invalidateStorageCaches() {
+        sourceStorageCache = null;
+        targetStorageCache = null;
+        emptyScan = false;
+        nextBelt = null;
+        nextBeltLookupTime = 0;
+    }
+    
+    // called by the chute block on neighbor updates, the cached inventories might be gone or replaced
+    public void onNeighborUpdate() {
+        invalidateStorageCaches();
+        wakeUp();
         
-        if (Platform.isModLoaded("ftbfiltersystem")) {
-            var filterAPI = FTBFilterSystemAPI.api();
-            if (filterAPI.isFilterItem(filteredItem))
-                return filterAPI.doesFilterMatch(filteredItem, stack);
+        // when used as belt end, the changed block might be the target inventory of the source belt
+        getSourceBelt().ifPresent(source -> {
+            source.invalidateStorageCaches();
+            source.wakeUp();
+        });
+    }
+    
+    // called when the content of an adjacent inventory changed (e.g. through comparator updates). The inventories themselves are still the same.
+    public void onNeighborContentChanged() {
+        wakeUp();
+        getSourceBelt().ifPresent(ChuteBlockEntity::wakeUp);
+    }
+    
+    // the belt that ends at this chute, if any
+    private Optional<ChuteBlockEntity> getSourceBelt() {
+        if (world == null || world.isClient || world.getTime() - lastTargetedTime >= 40 || sourceBeltPos.equals(BlockPos.ORIGIN) || !world.isChunkLoaded(sourceBeltPos))
+            return Optional.empty();
+        return world.getBlockEntity(sourceBeltPos, BlockEntitiesContent.CHUTE_BLOCK.get());
+    }
+    
+    @Override
+    public void setWorld(World world) {
+        super.setWorld(world);
+        updateNetworkRegistration();
+        
+        // every chute watches the inventory behind it, as source of a belt or as belt end
+        if (world instanceof ServerWorld serverWorld && !isRemoved()) {
+            watchedInventory = pos.offset(getOwnFacing().getOpposite());
+            BeltNetworkManager.get(serverWorld).watchInventory(this, watchedInventory);
+        }
+    }
+    
+    @Override
+    public void markRemoved() {
+        super.markRemoved();
+        invalidateStorageCaches();
+        if (world instanceof ServerWorld serverWorld) {
+            var manager = BeltNetworkManager.get(serverWorld);
+            manager.remove(this);
+            manager.getSupportIndex().remove(this);
+            if (watchedInventory != null)
+                manager.unwatchInventory(this, watchedInventory);
         }
         
-        return stack.getItem().equals(filteredItem.getItem());
+        if (world != null && world.isClient && bakedMeshes != null) {
+            for (var mesh : bakedMeshes) {
+                if (mesh != null)
+                    mesh.close();
+            }
+            bakedMeshes = null;
+        }
+    }
+    
+    private ChuteFilter getFilter() {
+        if (compiledFilter == null) {
+            world.getProfiler().push("compileFilter");
+            compiledFilter = ChuteFilter.compile(filteredItem);
+            world.getProfiler().pop();
+        }
+        return compiledFilter;
+    }
+    
+    // progress taken up by each item in the output queue
+    private double getQueueSpacing() {
+        var squashFactor = syncedSquashFactor > 0 ? syncedSquashFactor : BeltsConfig.getTierSettings(tier).squashFactor();
+        return squashFactor / beltData.totalLength();
     }
     
     private float getPotentialQueueStart() {
-        var squashFactor = 0.8f;
-        var beltLength = beltData.totalLength();
-        var queueCount = outputQueue;
-        var queueSize = queueCount * squashFactor / beltLength;
-        return (float) (1f - queueSize);
+        return (float) movingItems.getQueueStart(getQueueSpacing());
     }
     
     @Override
@@ -262,15 +688,16 @@ public class ChuteBlockEntity extends BlockEntity implements BlockEntityTicker<C
         
         nbt.put("filter", filteredItem.encodeAllowEmpty(registryLookup));
         
-        var positionsList = new NbtList();
-        positionsList.addAll(movingItems.stream().map(pair -> {
-            var compound = new NbtCompound();
-            compound.putFloat("a", pair.progress);
-            compound.put("b", pair.stack.encode(registryLookup));
-            compound.putShort("id", pair.id);
-            return compound;
-        }).toList());
-        nbt.put("moving", positionsList);
+        if (tier != BeltTier.BASIC)
+            nbt.putString("tier", tier.name());
+        
+        if (extractionCursor != 0)
+            nbt.putInt("cursor", extractionCursor);
+        
+        if (lastSimulatedTime != 0)
+            nbt.putLong("simTime", lastSimulatedTime);
+        
+        nbt.put("moving", writeBeltItems(movingItems, stack -> stack.encode(registryLookup)));
     }
     
     @SuppressWarnings("OptionalIsPresent")
@@ -284,31 +711,63 @@ public class ChuteBlockEntity extends BlockEntity implements BlockEntityTicker<C
         midPoints = Arrays.stream(midPointsList).mapToObj(BlockPos::fromLong).toList();
         
         filteredItem = ItemStack.fromNbtOrEmpty(registryLookup, nbt.getCompound("filter"));
+        compiledFilter = null;
+        
+        tier = BeltTier.byName(nbt.getString("tier"));
+        extractionCursor = nbt.getInt("cursor");
+        lastSimulatedTime = nbt.getLong("simTime");
+        // only present in the sync data
+        syncedSpeed = nbt.getFloat("speed");
+        syncedSquashFactor = nbt.getFloat("squash");
         
         var positions = nbt.getList("moving", NbtElement.COMPOUND_TYPE);
-        movingItems.clear();
-        movingItems.addAll(positions.stream().map(element -> {
-            var compound = (NbtCompound) element;
-            var progress = compound.getFloat("a");
-            var id = compound.getShort("id");
-            var stackCandidate = ItemStack.fromNbt(registryLookup, compound.get("b"));
-            var stack = stackCandidate.isEmpty() ? ItemStack.EMPTY : stackCandidate.get();
-            return new BeltItem(progress, id, stack);
-        }).toList());
+        movingItems.load(readBeltItems(positions, element -> {
+            var stackCandidate = ItemStack.fromNbt(registryLookup, element);
+            return stackCandidate.isEmpty() ? ItemStack.EMPTY : stackCandidate.get();
+        }));
         
         if (world == null) return;
         
-        beltData = BeltData.create(this);
+        rebuildBeltData();
         
         if (world.isClient) {
-            renderedModel = null;
+            renderedModels = null;
+        } else {
+            updateNetworkRegistration();
+        }
+    }
+    
+    // the item list (de)serialization takes the stack codec as parameter, so it can also be used without a registry lookup (e.g. in benchmarks)
+    public static NbtList writeBeltItems(BeltItemQueue items, Function<ItemStack, NbtElement> stackEncoder) {
+        var positionsList = new NbtList();
+        for (var pair : items) {
+            var compound = new NbtCompound();
+            compound.putFloat("a", items.getProgress(pair));
+            compound.put("b", stackEncoder.apply(pair.stack));
+            compound.putShort("id", pair.id);
+            positionsList.add(compound);
+        }
+        return positionsList;
+    }
+    
+    public static List<BeltItem> readBeltItems(NbtList positions, Function<NbtElement, ItemStack> stackDecoder) {
+        var result = new ArrayList<BeltItem>(positions.size());
+        for (var element : positions) {
+            var compound = (NbtCompound) element;
+            var progress = compound.getFloat("a");
+            var id = compound.getShort("id");
+            result.add(new BeltItem(progress, id, stackDecoder.apply(compound.get("b"))));
         }
+        return result;
     }
     
     @Override
     public NbtCompound toInitialChunkDataNbt(RegistryWrapper.WrapperLookup registryLookup) {
         var base = super.toInitialChunkDataNbt(registryLookup);
         writeNbt(base, registryLookup);
+        var tierSettings = BeltsConfig.getTierSettings(tier);
+        base.putFloat("speed", tierSettings.speed());
+        base.putFloat("squash", tierSettings.squashFactor());
         return base;
     }
     
@@ -321,6 +780,23 @@ public class ChuteBlockEntity extends BlockEntity implements BlockEntityTicker<C
         return movingItems;
     }
     
+    public int getItemCount() {
+        return movingItems.size();
+    }
+    
+    // absolute progress [0-1] of an item on this belt
+    public float getItemProgress(BeltItem item) {
+        return movingItems.getProgress(item);
+    }
+    
+    // progress interpolated between the last two client ticks. All free items moved by exactly one progress delta in the last tick,
+    // so no previous state needs to be stored. Queued items don't move.
+    public float getItemProgress(BeltItem item, float tickDelta) {
+        var progress = movingItems.getProgress(item);
+        if (item.queued || beltData == null) return progress;
+        return (float) Math.max(0, progress - getProgressDelta() * (1 - tickDelta));
+    }
+    
     public BlockPos getTarget() {
         return target;
     }
@@ -342,19 +818,50 @@ public class ChuteBlockEntity extends BlockEntity implements BlockEntityTicker<C
     public void assignFromBeltItem(BlockPos target, List<BlockPos> midpoints) {
         this.target = target;
         this.midPoints = midpoints;
-        beltData = BeltData.create(this);
+        invalidateStorageCaches();
+        wakeUp();
+        rebuildBeltData();
         networkDirty = true;
         this.markDirty();
         
         if (world instanceof ServerWorld serverWorld)
             serverWorld.getChunkManager().markForUpdate(pos);
+        
+        updateNetworkRegistration();
     }
     
+    // midpoints without a support are skipped. On the server, the support facings come from the cache of the support index.
     public List<Pair<BlockPos, Direction>> getMidPointsWithTangents() {
-        return midPoints.stream()
-                 .filter(point -> world.getBlockState(point).getBlock().equals(BlockContent.CONVEYOR_SUPPORT_BLOCK.get()))
-                 .map(point -> new Pair<>(point, world.getBlockState(point).get(HorizontalFacingBlock.FACING)))
-                 .toList();
+        var supportIndex = world instanceof ServerWorld serverWorld ? BeltNetworkManager.get(serverWorld).getSupportIndex() : null;
+        
+        var result = new ArrayList<Pair<BlockPos, Direction>>(midPoints.size());
+        for (var point : midPoints) {
+            Direction facing;
+            if (supportIndex != null) {
+                facing = supportIndex.getFacing(world, point);
+            } else {
+                var state = world.getBlockState(point);
+                facing = state.isOf(BlockContent.CONVEYOR_SUPPORT_BLOCK.get()) ? state.get(HorizontalFacingBlock.FACING) : null;
+            }
+            
+            if (facing != null)
+                result.add(new Pair<>(point, facing));
+        }
+        
+        return result;
+    }
+    
+    // called by the support index when a support of this belt was placed, broken or rotated. The client rebuilds its mesh from the resync.
+    void onSupportChanged() {
+        if (isRemoved() || !(world instanceof ServerWorld serverWorld)) return;
+        
+        if (!hasTarget()) {
+            BeltNetworkManager.get(serverWorld).getSupportIndex().remove(this);
+            return;
+        }
+        
+        rebuildBeltData();
+        serverWorld.getChunkManager().markForUpdate(pos);
     }
     
     public void assignFilterItem(ItemStack stack, PlayerEntity player) {
@@ -365,7 +872,10 @@ public class ChuteBlockEntity extends BlockEntity implements BlockEntityTicker<C
         }
         
         player.sendMessage(Text.translatable("message.belts.filter_set"));
-        filteredItem = stack.copy();
+        filteredItem = ChuteFilter.createFilterStack(stack);
+        compiledFilter = null;
+        wakeUp();
+        emptyScan = false;
         this.markDirty();
         
         if (world instanceof ServerWorld serverWorld)
@@ -375,16 +885,78 @@ public class ChuteBlockEntity extends BlockEntity implements BlockEntityTicker<C
     public void resetFilterItem(PlayerEntity player) {
         player.sendMessage(Text.translatable("message.belts.filter_reset"));
         filteredItem = ItemStack.EMPTY;
+        compiledFilter = null;
+        wakeUp();
+        emptyScan = false;
         this.markDirty();
         
         if (world instanceof ServerWorld serverWorld)
             serverWorld.getChunkManager().markForUpdate(pos);
     }
     
+    public BeltStats getStats() {
+        if (statsSince < 0 && world != null)
+            statsSince = world.getTime();
+        return new BeltStats(world == null ? 0 : world.getTime() - statsSince, itemsExtracted, itemsDelivered, blockedTicks, failedExtractions, failedInserts);
+    }
+    
+    public void resetStats() {
+        statsSince = world == null ? -1 : world.getTime();
+        itemsExtracted = 0;
+        itemsDelivered = 0;
+        blockedTicks = 0;
+        failedExtractions = 0;
+        failedInserts = 0;
+    }
+    
+    public BeltTier getTier() {
+        return tier;
+    }
+    
+    // upgrades are applied to the belt that starts or ends at this chute. Returns true if the upgrade item was used up.
+    public boolean applyUpgrade(BeltTier upgrade, @Nullable PlayerEntity player) {
+        var owner = hasTarget() ? Optional.of(this) : getSourceBelt();
+        if (owner.isEmpty()) {
+            if (player != null) player.sendMessage(Text.translatable("message.belts.upgrade_no_belt"));
+            return false;
+        }
+        
+        var belt = owner.get();
+        if (belt.tier.ordinal() >= upgrade.ordinal()) {
+            if (player != null) player.sendMessage(Text.translatable("message.belts.upgrade_not_higher"));
+            return false;
+        }
+        
+        // the replaced upgrade is returned
+        var replaced = getUpgradeStack(belt.tier);
+        if (!replaced.isEmpty() && player != null)
+            player.getInventory().offerOrDrop(replaced);
+        
+        belt.tier = upgrade;
+        belt.wakeUp();
+        belt.networkDirty = true;
+        belt.markDirty();
+        
+        if (player != null)
+            player.sendMessage(Text.translatable("message.belts.upgrade_applied", Text.translatable("tier.belts." + upgrade.getConfigName())));
+        return true;
+    }
+    
+    private static ItemStack getUpgradeStack(BeltTier tier) {
+        return switch (tier) {
+            case BASIC -> ItemStack.EMPTY;
+            case FAST -> new ItemStack(ItemContent.BELT_UPGRADE_FAST.get());
+            case EXPRESS -> new ItemStack(ItemContent.BELT_UPGRADE_EXPRESS.get());
+        };
+    }
+    
     public static class BeltItem {
+        // absolute progress when queued, otherwise relative to the moving origin of the BeltItemQueue
         public float progress;
         public final short id;
         public final ItemStack stack;
+        // whether the item is waiting in the output queue. Not saved, gets recalculated each tick.
+        public boolean queued;
         
         public BeltItem(short id, ItemStack stack) {
             this.id = id;
@@ -398,7 +970,27 @@ public class ChuteBlockEntity extends BlockEntity implements BlockEntityTicker<C
         }
     }
     
-    public record BeltData(List<Pair<Vec3d, Vec3d>> allPoints, double totalLength, Double[] segmentLengths) {
+    // snapshot of the statistics of a belt. The counters cover the last 'ticks' ticks.
+    public record BeltStats(long ticks, long extracted, long delivered, long blockedTicks, long failedExtractions, long failedInserts) {
+        
+        public double getDeliveredPerMinute() {
+            return ticks > 0 ? delivered * 1200d / ticks : 0;
+        }
+        
+        public double getBlockedRatio() {
+            return ticks > 0 ? Math.min(1, blockedTicks / (double) ticks) : 0;
+        }
+    }
+    
+    // precomputed arc length table of the belt spline. The curve is sampled densely on creation, so position queries are a binary search
+    // over the cumulative sample lengths. Equal progress steps always cover the same distance, so items move at a uniform speed.
+    // bounds contains the spline, expanded to also cover the belt mesh and the items on it
+    public record BeltData(double[] samplePositions, double[] sampleLengths, double totalLength, Box bounds) {
+        
+        // samples per block of belt length
+        private static final int SAMPLE_DENSITY = 8;
+        private static final int MIN_SEGMENT_SAMPLES = 16;
+        private static final double BOUNDS_MARGIN = 1d;
         
         public static @Nullable BeltData create(ChuteBlockEntity entity) {
             
@@ -421,17 +1013,132 @@ public class ChuteBlockEntity extends BlockEntity implements BlockEntityTicker<C
             var transformedMidPoints = conveyorMidPointsVisual.stream().map(elem -> new Pair<>(elem.getLeft().toCenterPos(), Vec3d.of(elem.getRight().getVector()))).toList();
             var segmentPoints = SplineUtil.getPointPairs(conveyorStartPointVisual, conveyorStartDir, conveyorEndPointVisual, conveyorEndDir, transformedMidPoints);
             
-            var segmentLengths = new Double[segmentPoints.size() - 1];
-            var totalLength = 0d;
-            for (int i = 0; i < segmentPoints.size() - 1; i++) {
+            return create(segmentPoints);
+        }
+        
+        // segment points are the spline points with their tangents, as returned by SplineUtil.getPointPairs
+        public static BeltData create(List<Pair<Vec3d, Vec3d>> segmentPoints) {
+            
+            var segmentCount = segmentPoints.size() - 1;
+            var segmentLengths = new double[segmentCount];
+            var segmentSamples = new int[segmentCount];
+            var sampleCount = 1;
+            for (int i = 0; i < segmentCount; i++) {
                 var from = segmentPoints.get(i);
                 var to = segmentPoints.get(i + 1);
-                var length = SplineUtil.getLineLength(from.getLeft(), from.getRight(), to.getLeft(), to.getRight().multiply(1));
-                segmentLengths[i] = (length);
-                totalLength += length;
+                var length = SplineUtil.getLineLength(from.getLeft(), from.getRight(), to.getLeft(), to.getRight());
+                segmentLengths[i] = length;
+                segmentSamples[i] = Math.max(MIN_SEGMENT_SAMPLES, (int) Math.ceil(length * SAMPLE_DENSITY));
+                sampleCount += segmentSamples[i];
+            }
+            
+            var positions = new double[sampleCount * 3];
+            var lengths = new double[sampleCount];
+            
+            var start = segmentPoints.getFirst().getLeft();
+            positions[0] = start.x;
+            positions[1] = start.y;
+            positions[2] = start.z;
+            
+            var index = 1;
+            var totalLength = 0d;
+            var point = new Vector3d();
+            for (int i = 0; i < segmentCount; i++) {
+                var from = segmentPoints.get(i).getLeft();
+                var to = segmentPoints.get(i + 1).getLeft();
+                var tangentScale = segmentLengths[i] * 1.5f;
+                var fromTangent = segmentPoints.get(i).getRight();
+                var toTangent = segmentPoints.get(i + 1).getRight();
+                var samples = segmentSamples[i];
+                
+                for (int j = 1; j <= samples; j++) {
+                    SplineUtil.getPointOnHermiteSpline(
+                      from.x, from.y, from.z, fromTangent.x * tangentScale, fromTangent.y * tangentScale, fromTangent.z * tangentScale,
+                      to.x, to.y, to.z, toTangent.x * tangentScale, toTangent.y * tangentScale, toTangent.z * tangentScale,
+                      j / (double) samples, point);
+                    var dx = point.x - positions[index * 3 - 3];
+                    var dy = point.y - positions[index * 3 - 2];
+                    var dz = point.z - positions[index * 3 - 1];
+                    totalLength += Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    
+                    positions[index * 3] = point.x;
+                    positions[index * 3 + 1] = point.y;
+                    positions[index * 3 + 2] = point.z;
+                    lengths[index] = totalLength;
+                    index++;
+                }
+            }
+            
+            return new BeltData(positions, lengths, totalLength, computeBounds(positions));
+        }
+        
+        private static Box computeBounds(double[] positions) {
+            double minX = positions[0], minY = positions[1], minZ = positions[2];
+            double maxX = minX, maxY = minY, maxZ = minZ;
+            for (int i = 3; i < positions.length; i += 3) {
+                minX = Math.min(minX, positions[i]);
+                minY = Math.min(minY, positions[i + 1]);
+                minZ = Math.min(minZ, positions[i + 2]);
+                maxX = Math.max(maxX, positions[i]);
+                maxY = Math.max(maxY, positions[i + 1]);
+                maxZ = Math.max(maxZ, positions[i + 2]);
             }
             
-            return new BeltData(segmentPoints, totalLength, segmentLengths);
+            return new Box(minX, minY, minZ, maxX, maxY, maxZ).expand(BOUNDS_MARGIN);
+        }
+        
+        // t is in range 0-1
+        public Vec3d getPosition(double t) {
+            var result = getPosition(t, new Vector3d());
+            return new Vec3d(result.x, result.y, result.z);
+        }
+        
+        // allocation free variant, writes the position into out
+        public Vector3d getPosition(double t, Vector3d out) {
+            var targetLength = Math.clamp(t, 0, 1) * totalLength;
+            var index = findSample(targetLength);
+            var delta = getSampleDelta(index, targetLength);
+            
+            var from = index * 3;
+            var to = from + 3;
+            return out.set(
+              MathHelpers.lerp(samplePositions[from], samplePositions[to], delta),
+              MathHelpers.lerp(samplePositions[from + 1], samplePositions[to + 1], delta),
+              MathHelpers.lerp(samplePositions[from + 2], samplePositions[to + 2], delta));
+        }
+        
+        // normalized direction of the belt at t
+        public Vec3d getTangent(double t) {
+            var result = getTangent(t, new Vector3d());
+            return new Vec3d(result.x, result.y, result.z);
+        }
+        
+        // allocation free variant, writes the normalized direction into out
+        public Vector3d getTangent(double t, Vector3d out) {
+            var index = findSample(Math.clamp(t, 0, 1) * totalLength);
+            
+            var from = index * 3;
+            var to = from + 3;
+            out.set(
+              samplePositions[to] - samplePositions[from],
+              samplePositions[to + 1] - samplePositions[from + 1],
+              samplePositions[to + 2] - samplePositions[from + 2]);
+            
+            var length = out.length();
+            return length > 0 ? out.div(length) : out;
+        }
+        
+        // returns the index of the last sample at or before the given length, so that [index, index + 1] contains it
+        private int findSample(double length) {
+            var index = Arrays.binarySearch(sampleLengths, length);
+            if (index < 0) index = -index - 2;
+            return Math.clamp(index, 0, sampleLengths.length - 2);
+        }
+        
+        private double getSampleDelta(int index, double length) {
+            var sampleLength = sampleLengths[index + 1] - sampleLengths[index];
+            if (sampleLength <= 0) return 0;
+            return Math.clamp((length - sampleLengths[index]) / sampleLength, 0, 1);
         }
         
     }
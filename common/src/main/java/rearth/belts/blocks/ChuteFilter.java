@@ -0,0 +1,216 @@
+package rearth.belts.blocks;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import dev.architectury.platform.Platform;
+import dev.ftb.mods.ftbfiltersystem.api.FTBFilterSystemAPI;
+import io.netty.buffer.ByteBuf;
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.objects.Object2BooleanOpenCustomHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.component.DataComponentTypes;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.tag.TagKey;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.StringIdentifiable;
+import org.jetbrains.annotations.Nullable;
+import rearth.belts.ComponentContent;
+import rearth.belts.api.item.ItemApi;
+
+import java.util.Set;
+
+// The filter of a chute, compiled once from the filter item so the extraction scan only does set lookups.
+// - FTB filter items are evaluated through the FTB api, with the result cached per item and components until the next data pack reload
+// - otherwise the filter mode stored on the filter item decides what is matched, see Mode
+// Filter items without a mode (set before modes existed) only match the item itself.
+public final class ChuteFilter implements ItemApi.ItemFilter {
+    
+    public static final ChuteFilter NONE = new ChuteFilter(null, null, null, false);
+    
+    private static final int MAX_CACHED_RESULTS = 256;
+    private static final Hash.Strategy<ItemStack> STACK_STRATEGY = new Hash.Strategy<>() {
+        @Override
+        public int hashCode(ItemStack stack) {
+            return stack == null ? 0 : ItemStack.hashCode(stack);
+        }
+        
+        @Override
+        public boolean equals(ItemStack a, ItemStack b) {
+            return a == b || (a != null && b != null && ItemStack.areItemsAndComponentsEqual(a, b));
+        }
+    };
+    
+    // increased on data pack reloads, cached FTB results of older generations are discarded
+    private static int generation;
+    
+    private final @Nullable TagKey<Item> tag;
+    private final @Nullable Set<Item> items;
+    private final @Nullable ItemStack ftbFilter;
+    private final boolean blacklist;
+    private final Object2BooleanOpenCustomHashMap<ItemStack> ftbResults;
+    private int ftbResultsGeneration = generation;
+    
+    private ChuteFilter(@Nullable TagKey<Item> tag, @Nullable Set<Item> items, @Nullable ItemStack ftbFilter, boolean blacklist) {
+        this.tag = tag;
+        this.items = items;
+        this.ftbFilter = ftbFilter;
+        this.blacklist = blacklist;
+        this.ftbResults = ftbFilter != null ? new Object2BooleanOpenCustomHashMap<>(STACK_STRATEGY) : null;
+    }
+    
+    // called on data pack reloads, tags and FTB filter results may have changed
+    public static void invalidateAll() {
+        generation++;
+    }
+    
+    // Returns a copy of the stack to use as filter item, with the mode derived from its name and content. Only called when a player sets the filter,
+    // so renaming rules never change the meaning of filters that are already set.
+    // - a name of "#namespace:tag" matches all items in that item tag
+    // - shulker boxes and bundles match all items inside them
+    // - otherwise the item itself is matched
+    // A name starting with "!" turns the filter into a blacklist.
+    public static ItemStack createFilterStack(ItemStack stack) {
+        var filterStack = stack.copy();
+        
+        Mode.Type type;
+        if (getTagId(filterStack) != null) {
+            type = Mode.Type.TAG;
+        } else if (!getContainedItems(filterStack).isEmpty()) {
+            type = Mode.Type.CONTENTS;
+        } else {
+            type = Mode.Type.ITEM;
+        }
+        
+        filterStack.set(ComponentContent.FILTER_MODE.get(), new Mode(type, getFilterName(filterStack).startsWith("!")));
+        return filterStack;
+    }
+    
+    public static ChuteFilter compile(ItemStack filterStack) {
+        if (filterStack.isEmpty()) return NONE;
+        
+        if (Platform.isModLoaded("ftbfiltersystem") && FTBFilterSystemAPI.api().isFilterItem(filterStack))
+            return new ChuteFilter(null, null, filterStack.copy(), false);
+        
+        var mode = filterStack.getOrDefault(ComponentContent.FILTER_MODE.get(), Mode.DEFAULT);
+        
+        if (mode.type() == Mode.Type.TAG) {
+            var id = getTagId(filterStack);
+            if (id != null)
+                return new ChuteFilter(TagKey.of(RegistryKeys.ITEM, id), null, null, mode.blacklist());
+        }
+        
+        var items = mode.type() == Mode.Type.CONTENTS ? getContainedItems(filterStack) : new ReferenceOpenHashSet<Item>();
+        if (items.isEmpty())
+            items.add(filterStack.getItem());
+        
+        return new ChuteFilter(null, items, null, mode.blacklist());
+    }
+    
+    private static String getFilterName(ItemStack filterStack) {
+        return filterStack.contains(DataComponentTypes.CUSTOM_NAME) ? filterStack.getName().getString().trim() : "";
+    }
+    
+    // the tag of a "#namespace:tag" name, after an optional "!"
+    private static @Nullable Identifier getTagId(ItemStack filterStack) {
+        var name = getFilterName(filterStack);
+        if (name.startsWith("!"))
+            name = name.substring(1).trim();
+        
+        return name.startsWith("#") ? Identifier.tryParse(name.substring(1)) : null;
+    }
+    
+    private static Set<Item> getContainedItems(ItemStack filterStack) {
+        var items = new ReferenceOpenHashSet<Item>();
+        var container = filterStack.get(DataComponentTypes.CONTAINER);
+        if (container != null)
+            container.iterateNonEmpty().forEach(stack -> items.add(stack.getItem()));
+        
+        var bundle = filterStack.get(DataComponentTypes.BUNDLE_CONTENTS);
+        if (bundle != null)
+            bundle.iterate().forEach(stack -> items.add(stack.getItem()));
+        
+        return items;
+    }
+    
+    // only FTB filters look at more than the item
+    @Override
+    public boolean isItemOnly() {
+        return ftbFilter == null;
+    }
+    
+    @SuppressWarnings("deprecation")
+    @Override
+    public boolean testItem(Item item) {
+        if (tag != null)
+            return item.getRegistryEntry().isIn(tag) != blacklist;
+        if (items != null)
+            return items.contains(item) != blacklist;
+        return true;
+    }
+    
+    @Override
+    public boolean test(ItemStack stack) {
+        // the registry entry keeps its own tag set, this is a set lookup as well
+        if (tag != null)
+            return stack.isIn(tag) != blacklist;
+        if (items != null)
+            return items.contains(stack.getItem()) != blacklist;
+        if (ftbFilter == null)
+            return true;
+        
+        if (ftbResultsGeneration != generation) {
+            ftbResults.clear();
+            ftbResultsGeneration = generation;
+        }
+        
+        if (ftbResults.containsKey(stack))
+            return ftbResults.getBoolean(stack);
+        
+        if (ftbResults.size() >= MAX_CACHED_RESULTS)
+            ftbResults.clear();
+        
+        var result = FTBFilterSystemAPI.api().doesFilterMatch(ftbFilter, stack);
+        ftbResults.put(stack.copyWithCount(1), result);
+        return result;
+    }
+    
+    // stored on the filter item when it is set, so the meaning of a filter never changes afterwards
+    public record Mode(Type type, boolean blacklist) {
+        
+        public static final Mode DEFAULT = new Mode(Type.ITEM, false);
+        
+        public static final Codec<Mode> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+          StringIdentifiable.createCodec(Type::values).fieldOf("type").forGetter(Mode::type),
+          Codec.BOOL.optionalFieldOf("blacklist", false).forGetter(Mode::blacklist)
+        ).apply(instance, Mode::new));
+        
+        public static final PacketCodec<ByteBuf, Mode> PACKET_CODEC = PacketCodec.tuple(
+          PacketCodecs.indexed(index -> Type.values()[index], Type::ordinal), Mode::type,
+          PacketCodecs.BOOL, Mode::blacklist,
+          Mode::new);
+        
+        public enum Type implements StringIdentifiable {
+            // the filter item itself
+            ITEM("item"),
+            // all items in the shulker box or bundle
+            CONTENTS("contents"),
+            // all items in the tag named by the filter item
+            TAG("tag");
+            
+            private final String name;
+            
+            Type(String name) {
+                this.name = name;
+            }
+            
+            @Override
+            public String asString() {
+                return name;
+            }
+        }
+    }
+}
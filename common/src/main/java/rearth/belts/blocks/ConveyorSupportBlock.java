@@ -8,6 +8,7 @@ import net.minecraft.block.HorizontalFacingBlock;
 import net.minecraft.block.ShapeContext;
 import net.minecraft.block.enums.BlockFace;
 import net.minecraft.item.ItemPlacementContext;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.state.StateManager;
 import net.minecraft.state.property.Properties;
 import net.minecraft.util.math.BlockPos;
@@ -15,6 +16,7 @@ import net.minecraft.util.math.Direction;
 import net.minecraft.util.shape.VoxelShape;
 import net.minecraft.util.shape.VoxelShapes;
 import net.minecraft.world.BlockView;
+import net.minecraft.world.World;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.HashMap;
@@ -56,6 +58,22 @@ public class ConveyorSupportBlock extends HorizontalFacingBlock {
         return Objects.requireNonNull(super.getPlacementState(ctx)).with(Properties.HORIZONTAL_FACING, ctx.getHorizontalPlayerFacing().getOpposite());
     }
     
+    // belts routed through this support are rebuilt when it is broken or rotated
+    @Override
+    protected void onStateReplaced(BlockState state, World world, BlockPos pos, BlockState newState, boolean moved) {
+        super.onStateReplaced(state, world, pos, newState, moved);
+        if (world instanceof ServerWorld serverWorld && state != newState)
+            BeltNetworkManager.get(serverWorld).getSupportIndex().onSupportChanged(pos);
+    }
+    
+    // a support placed again at a stored midpoint is used by the belt again. Rotations are already handled in onStateReplaced.
+    @Override
+    protected void onBlockAdded(BlockState state, World world, BlockPos pos, BlockState oldState, boolean notify) {
+        super.onBlockAdded(state, world, pos, oldState, notify);
+        if (world instanceof ServerWorld serverWorld && !oldState.isOf(this))
+            BeltNetworkManager.get(serverWorld).getSupportIndex().onSupportChanged(pos);
+    }
+    
     @Override
     protected MapCodec<? extends HorizontalFacingBlock> getCodec() {
         return null;
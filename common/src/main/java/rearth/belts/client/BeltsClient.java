@@ -1,14 +1,41 @@
 package rearth.belts.client;
 
+import dev.architectury.event.events.client.ClientPlayerEvent;
+import dev.architectury.networking.NetworkManager;
+import dev.architectury.registry.ReloadListenerRegistry;
+import net.minecraft.resource.ResourceType;
+import net.minecraft.resource.SynchronousResourceReloader;
+import rearth.belts.BeltsConfig;
 import rearth.belts.BlockEntitiesContent;
+import rearth.belts.client.renderers.ItemQuadCache;
+import rearth.belts.client.renderers.BeltLightCache;
+import rearth.belts.client.renderers.BeltMesh;
 import rearth.belts.client.renderers.ChuteBeltRenderer;
 import net.minecraft.client.render.block.entity.BlockEntityRendererFactories;
+import rearth.belts.network.BeltResyncRequestPayload;
+import rearth.belts.network.BeltSyncPayload;
+import rearth.belts.network.BeltTiersPayload;
+
+import java.util.List;
 
 public final class BeltsClient {
     
     public static void init() {
         System.out.println("Hello from belt client!");
         
+        NetworkManager.registerReceiver(NetworkManager.Side.S2C, BeltSyncPayload.ID, BeltSyncPayload.CODEC, BeltsClient::onBeltSync);
+        NetworkManager.registerReceiver(NetworkManager.Side.S2C, BeltTiersPayload.ID, BeltTiersPayload.CODEC,
+          (payload, context) -> context.queue(() -> BeltsConfig.setServerTierSettings(payload.tiers())));
+        
+        // baked belt meshes hold GPU buffers, which are not freed with the world
+        ClientPlayerEvent.CLIENT_PLAYER_QUIT.register(player -> {
+            BeltMesh.closeAll();
+            BeltLightCache.clear();
+            BeltsConfig.setServerTierSettings(List.of());
+        });
+        
+        // models are replaced on resource reloads
+        ReloadListenerRegistry.register(ResourceType.CLIENT_RESOURCES, (SynchronousResourceReloader) manager -> ItemQuadCache.clearCaches());
     }
     
     public static void registerRenderers() {
@@ -17,4 +44,15 @@ public final class BeltsClient {
         BlockEntityRendererFactories.register(BlockEntitiesContent.CHUTE_BLOCK.get(), ctx -> new ChuteBeltRenderer());
     }
     
+    private static void onBeltSync(BeltSyncPayload payload, NetworkManager.PacketContext context) {
+        context.queue(() -> {
+            var world = context.getPlayer().getWorld();
+            var candidate = world.getBlockEntity(payload.pos(), BlockEntitiesContent.CHUTE_BLOCK.get());
+            if (candidate.isEmpty()) return;
+            
+            if (!candidate.get().applySyncPayload(payload))
+                NetworkManager.sendToServer(new BeltResyncRequestPayload(payload.pos()));
+        });
+    }
+    
 }
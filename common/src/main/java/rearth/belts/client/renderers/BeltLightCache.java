@@ -0,0 +1,78 @@
+package rearth.belts.client.renderers;
+
+import it.unimi.dsi.fastutil.longs.Long2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.client.render.WorldRenderer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+
+// Bounded cache of the packed lightmap coordinates at block positions along belts. The least recently used entries are evicted first.
+// Entries are invalidated per chunk section through the light updates of the client chunk manager, and dropped completely when the world changes.
+// Only used from the render thread.
+public final class BeltLightCache {
+    
+    private static final int MAX_ENTRIES = 8192;
+    private static final int MAX_TRACKED_SECTIONS = 4096;
+    
+    // value: light revision of the section when cached in the upper 32 bits, packed light in the lower 32 bits
+    private static final Long2LongLinkedOpenHashMap CACHE = new Long2LongLinkedOpenHashMap(MAX_ENTRIES);
+    // revision of the last light update in each section
+    private static final Long2LongOpenHashMap SECTION_REVISIONS = new Long2LongOpenHashMap();
+    
+    static {
+        CACHE.defaultReturnValue(Long.MIN_VALUE);
+    }
+    
+    private static World cachedWorld;
+    private static int revision = 0;
+    // revision of sections without tracked updates. Raised when the tracked sections are reset, which counts as a change everywhere.
+    private static int baseRevision = 0;
+    
+    public static int getLight(World world, BlockPos pos) {
+        return getLight(world, pos.asLong());
+    }
+    
+    public static int getLight(World world, long pos) {
+        if (world != cachedWorld) {
+            clear();
+            cachedWorld = world;
+        }
+        
+        var sectionRevision = getSectionRevision(ChunkSectionPos.fromBlockPos(pos));
+        // missing entries return a negative revision, which never matches
+        var cached = CACHE.getAndMoveToLast(pos);
+        if ((int) (cached >>> 32) == sectionRevision)
+            return (int) cached;
+        
+        var light = WorldRenderer.getLightmapCoordinates(world, BlockPos.fromLong(pos));
+        CACHE.putAndMoveToLast(pos, ((long) sectionRevision << 32) | (light & 0xFFFFFFFFL));
+        if (CACHE.size() > MAX_ENTRIES)
+            CACHE.removeFirstLong();
+        
+        return light;
+    }
+    
+    // the revision changes each time the light in the given section changes
+    public static int getSectionRevision(long sectionPos) {
+        return (int) SECTION_REVISIONS.getOrDefault(sectionPos, baseRevision);
+    }
+    
+    // called for each light update the client receives or computes
+    public static void onLightUpdate(long sectionPos) {
+        if (SECTION_REVISIONS.size() >= MAX_TRACKED_SECTIONS) {
+            SECTION_REVISIONS.clear();
+            CACHE.clear();
+            baseRevision = ++revision;
+        }
+        
+        SECTION_REVISIONS.put(sectionPos, ++revision);
+    }
+    
+    public static void clear() {
+        CACHE.clear();
+        SECTION_REVISIONS.clear();
+        baseRevision = ++revision;
+        cachedWorld = null;
+    }
+}
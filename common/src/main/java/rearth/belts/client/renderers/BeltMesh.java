@@ -0,0 +1,248 @@
+package rearth.belts.client.renderers;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import dev.architectury.platform.Platform;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.Frustum;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.BufferAllocator;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.Colors;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+import org.joml.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+
+// The belt body of a single chute, baked into one vertex buffer per chunk section the belt passes through. Each section is only uploaded again when
+// the belt model or the light level in it changes (as reported by the BeltLightCache), and is only drawn if its bounds are in the view frustum.
+// Only used from the render thread.
+public class BeltMesh implements AutoCloseable {
+    
+    // all meshes with an allocated buffer, to free them when leaving the world
+    private static final Set<BeltMesh> LIVE_MESHES = new ReferenceOpenHashSet<>();
+    private static final Matrix4f MODEL_VIEW = new Matrix4f();
+    
+    private Section[] sections = new Section[0];
+    private ChuteBeltRenderer.Quad[] bakedQuads;
+    private int[] bakedLights;
+    
+    // shader packs replace the vanilla shader programs, so with those the belt is drawn through the regular vertex consumers
+    public static boolean isSupported() {
+        return !Platform.isModLoaded("iris") && !Platform.isModLoaded("oculus");
+    }
+    
+    public static void closeAll() {
+        for (var mesh : new ArrayList<>(LIVE_MESHES))
+            mesh.close();
+    }
+    
+    // re-bakes the mesh if the model is new, or if the light along the belt has changed. Returns true if anything was uploaded.
+    public boolean update(ChuteBeltRenderer.Quad[] quads, World world, BlockPos origin) {
+        
+        if (quads != bakedQuads) {
+            closeSections();
+            sections = createSections(quads, origin);
+            bakedQuads = quads;
+            bakedLights = computeLights(quads, world, origin);
+            for (var section : sections) {
+                section.lightRevision = BeltLightCache.getSectionRevision(section.sectionPos);
+                section.bake(quads, bakedLights);
+            }
+            return true;
+        }
+        
+        var lightChanged = false;
+        for (var section : sections) {
+            var revision = BeltLightCache.getSectionRevision(section.sectionPos);
+            if (revision != section.lightRevision) {
+                section.lightRevision = revision;
+                lightChanged = true;
+            }
+        }
+        if (!lightChanged) return false;
+        
+        // only the sections with changed light are uploaded again. A section also depends on the light at the end of the previous one.
+        var lights = computeLights(quads, world, origin);
+        var uploaded = false;
+        for (var section : sections) {
+            if (!Arrays.equals(lights, section.from, section.to + 1, bakedLights, section.from, section.to + 1)) {
+                section.bake(quads, lights);
+                uploaded = true;
+            }
+        }
+        bakedLights = lights;
+        return uploaded;
+    }
+    
+    // splits the quads into runs of consecutive quads in the same chunk section. The quads are ordered along the belt.
+    private static Section[] createSections(ChuteBeltRenderer.Quad[] quads, BlockPos origin) {
+        var result = new ArrayList<Section>();
+        
+        var from = 0;
+        for (int i = 1; i <= quads.length; i++) {
+            if (i < quads.length && ChunkSectionPos.toLong(quads[i].worldPos()) == ChunkSectionPos.toLong(quads[from].worldPos())) continue;
+            result.add(new Section(from, i, ChunkSectionPos.toLong(quads[from].worldPos()), computeBounds(quads, from, i, origin)));
+            from = i;
+        }
+        
+        return result.toArray(Section[]::new);
+    }
+    
+    // the quad vertices are relative to the chute position
+    private static Box computeBounds(ChuteBeltRenderer.Quad[] quads, int from, int to, BlockPos origin) {
+        var minX = Float.POSITIVE_INFINITY;
+        var minY = Float.POSITIVE_INFINITY;
+        var minZ = Float.POSITIVE_INFINITY;
+        var maxX = Float.NEGATIVE_INFINITY;
+        var maxY = Float.NEGATIVE_INFINITY;
+        var maxZ = Float.NEGATIVE_INFINITY;
+        
+        for (int i = from; i < to; i++) {
+            var quad = quads[i];
+            for (var vertex : new ChuteBeltRenderer.Vertex[] {quad.a(), quad.b(), quad.c(), quad.d()}) {
+                minX = Math.min(minX, vertex.x());
+                minY = Math.min(minY, vertex.y());
+                minZ = Math.min(minZ, vertex.z());
+                maxX = Math.max(maxX, vertex.x());
+                maxY = Math.max(maxY, vertex.y());
+                maxZ = Math.max(maxZ, vertex.z());
+            }
+        }
+        
+        // the mesh is drawn slightly below the vertex positions
+        return new Box(minX, minY, minZ, maxX, maxY, maxZ).offset(origin).expand(0.25);
+    }
+    
+    // index 0 is the light at the chute itself, index i + 1 the light of quad i.
+    // The back vertices of each quad use the light of the previous quad, to smooth out the transitions.
+    private static int[] computeLights(ChuteBeltRenderer.Quad[] quads, World world, BlockPos origin) {
+        var result = new int[quads.length + 1];
+        result[0] = BeltLightCache.getLight(world, origin);
+        
+        BlockPos lastPos = null;
+        for (int i = 0; i < quads.length; i++) {
+            var worldPos = quads[i].worldPos();
+            // all quads of a segment share the same position
+            if (worldPos.equals(lastPos)) {
+                result[i + 1] = result[i];
+                continue;
+            }
+            
+            result[i + 1] = BeltLightCache.getLight(world, worldPos);
+            lastPos = worldPos;
+        }
+        
+        return result;
+    }
+    
+    private static void addVertex(BufferBuilder builder, ChuteBeltRenderer.Vertex vertex, int light) {
+        builder.vertex(vertex.x(), vertex.y(), vertex.z())
+          .color(Colors.WHITE)
+          .texture(vertex.u(), vertex.v())
+          .light(light)
+          .normal(0, 1, 0);
+    }
+    
+    // draws all visible sections right away, in the space of the given matrix stack
+    public void draw(MatrixStack matrices, Frustum frustum) {
+        if (sections.length == 0) return;
+        
+        var layer = RenderLayer.getSolid();
+        layer.startDrawing();
+        
+        var shader = RenderSystem.getShader();
+        if (shader != null) {
+            // block entity matrices are relative to the camera, the camera rotation is part of the model view matrix
+            MODEL_VIEW.set(RenderSystem.getModelViewMatrix()).mul(matrices.peek().getPositionMatrix());
+            if (shader.chunkOffset != null)
+                shader.chunkOffset.set(0f, 0f, 0f);
+            
+            for (var section : sections) {
+                if (section.buffer == null || !frustum.isVisible(section.bounds)) continue;
+                
+                section.buffer.bind();
+                section.buffer.draw(MODEL_VIEW, RenderSystem.getProjectionMatrix(), shader);
+            }
+            VertexBuffer.unbind();
+        }
+        
+        layer.endDrawing();
+    }
+    
+    private void closeSections() {
+        for (var section : sections)
+            section.close();
+        sections = new Section[0];
+    }
+    
+    @Override
+    public void close() {
+        closeSections();
+        LIVE_MESHES.remove(this);
+        bakedQuads = null;
+        bakedLights = null;
+    }
+    
+    // the quads [from, to) of the belt model, all in the same chunk section
+    private final class Section {
+        
+        private final int from;
+        private final int to;
+        private final long sectionPos;
+        private final Box bounds;
+        private VertexBuffer buffer;
+        private int lightRevision;
+        
+        private Section(int from, int to, long sectionPos, Box bounds) {
+            this.from = from;
+            this.to = to;
+            this.sectionPos = sectionPos;
+            this.bounds = bounds;
+        }
+        
+        private void bake(ChuteBeltRenderer.Quad[] quads, int[] lights) {
+            var format = VertexFormats.POSITION_COLOR_TEXTURE_LIGHT_NORMAL;
+            try (var allocator = new BufferAllocator((to - from) * 4 * format.getVertexSizeByte())) {
+                var builder = new BufferBuilder(allocator, VertexFormat.DrawMode.QUADS, format);
+                
+                for (int i = from; i < to; i++) {
+                    var quad = quads[i];
+                    var light = lights[i + 1];
+                    var lastLight = lights[i];
+                    addVertex(builder, quad.a(), light);
+                    addVertex(builder, quad.b(), light);
+                    addVertex(builder, quad.c(), lastLight);
+                    addVertex(builder, quad.d(), lastLight);
+                }
+                
+                var built = builder.endNullable();
+                if (built == null) return;
+                
+                if (buffer == null) {
+                    buffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
+                    LIVE_MESHES.add(BeltMesh.this);
+                }
+                
+                buffer.bind();
+                buffer.upload(built);
+                VertexBuffer.unbind();
+            }
+        }
+        
+        private void close() {
+            if (buffer != null) {
+                buffer.close();
+                buffer = null;
+            }
+        }
+    }
+}
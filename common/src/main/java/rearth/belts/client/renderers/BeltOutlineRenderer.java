@@ -3,6 +3,7 @@ package rearth.belts.client.renderers;
 import rearth.belts.BlockContent;
 import rearth.belts.BlockEntitiesContent;
 import rearth.belts.ComponentContent;
+import rearth.belts.blocks.ChuteBlockEntity;
 import rearth.belts.items.BeltItem;
 import rearth.belts.util.MathHelpers;
 import rearth.belts.util.SplineUtil;
@@ -18,8 +19,8 @@ import net.minecraft.util.Pair;
 import net.minecraft.util.hit.BlockHitResult;
 import net.minecraft.util.hit.HitResult;
 import net.minecraft.util.math.*;
+import org.joml.Vector3d;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class BeltOutlineRenderer {
@@ -115,61 +116,76 @@ public class BeltOutlineRenderer {
         matrixStack.push();
         var cameraPos = camera.getPos();
         matrixStack.translate(-cameraPos.getX(), -cameraPos.getY(), -cameraPos.getZ());
-        var linePoints = getPositionsAlongLine(startPos, visualEndPos, startDir, visualEndDir, midPoints);
         
-        var lastForward = Vec3d.of(startDir).normalize();
-        var lastCenter = Vec3d.ZERO;
-        if (!linePoints.isEmpty())
-            lastCenter = linePoints.getFirst();
-        
-        for (var center : linePoints) {
+        var beltData = createPlannedBeltData(startPos, visualEndPos, startDir, visualEndDir, midPoints);
+        var stepSize = 0.1f;
+        var lines = consumer.getBuffer(RenderLayer.getLines());
+        var center = new Vector3d();
+        
+        var lastForwardX = (double) startDir.getX();
+        var lastForwardY = (double) startDir.getY();
+        var lastForwardZ = (double) startDir.getZ();
+        beltData.getPosition(0, center);
+        var lastCenterX = center.x;
+        var lastCenterY = center.y;
+        var lastCenterZ = center.z;
+        
+        for (var i = 0f; i < beltData.totalLength(); i += stepSize) {
             var lineRadius = 0.05f;
             
-            var newForward = center.subtract(lastCenter).normalize();
+            beltData.getPosition(i / beltData.totalLength(), center);
+            
+            var newForwardX = center.x - lastCenterX;
+            var newForwardY = center.y - lastCenterY;
+            var newForwardZ = center.z - lastCenterZ;
+            var forwardLength = Math.sqrt(newForwardX * newForwardX + newForwardY * newForwardY + newForwardZ * newForwardZ);
             
             // this only happens for the first one
-            if (center.equals(lastCenter))
-                newForward = lastForward;
+            if (forwardLength == 0) {
+                newForwardX = lastForwardX;
+                newForwardY = lastForwardY;
+                newForwardZ = lastForwardZ;
+            } else {
+                newForwardX /= forwardLength;
+                newForwardY /= forwardLength;
+                newForwardZ /= forwardLength;
+            }
             
-            var curveFactor = newForward.distanceTo(lastForward);
-            var color = new Vec3d(1, 1, 1);
+            var curveX = newForwardX - lastForwardX;
+            var curveY = newForwardY - lastForwardY;
+            var curveZ = newForwardZ - lastForwardZ;
+            var curveFactor = Math.sqrt(curveX * curveX + curveY * curveY + curveZ * curveZ);
+            
+            float red = 1, green = 1, blue = 1;
             
             if (curveFactor > 0.25f) {
-                color = new Vec3d(1, 0.6f, 0.2f);
+                green = 0.6f;
+                blue = 0.2f;
             }
             
             if (curveFactor > 0.43f) {
-                color = new Vec3d(1, 0, 0);
+                green = 0;
+                blue = 0;
             }
             
-            lastCenter = center;
-            lastForward = MathHelpers.lerp(lastForward, newForward, 0.3f);
+            lastCenterX = center.x;
+            lastCenterY = center.y;
+            lastCenterZ = center.z;
+            lastForwardX = MathHelpers.lerp(lastForwardX, newForwardX, 0.3f);
+            lastForwardY = MathHelpers.lerp(lastForwardY, newForwardY, 0.3f);
+            lastForwardZ = MathHelpers.lerp(lastForwardZ, newForwardZ, 0.3f);
             
-            WorldRenderer.drawBox(matrixStack, consumer.getBuffer(RenderLayer.getLines()), center.x - lineRadius, center.y - lineRadius, center.z - lineRadius, center.x + lineRadius, center.y + lineRadius, center.z + lineRadius, (float) color.x, (float) color.y, (float) color.z, 0.8f);
+            WorldRenderer.drawBox(matrixStack, lines, center.x - lineRadius, center.y - lineRadius, center.z - lineRadius, center.x + lineRadius, center.y + lineRadius, center.z + lineRadius, red, green, blue, 0.8f);
         }
         
         matrixStack.pop();
         
     }
     
-    private static List<Vec3d> getPositionsAlongLine(Vec3d from, Vec3d to, Vec3i startDir, Vec3i endDir, List<Pair<BlockPos, Direction>> midpoints) {
-        var stepSize = 0.1f;
-        
-        var result = new ArrayList<Vec3d>();
-        
+    private static ChuteBlockEntity.BeltData createPlannedBeltData(Vec3d from, Vec3d to, Vec3i startDir, Vec3i endDir, List<Pair<BlockPos, Direction>> midpoints) {
         var transformedMidPoints = midpoints.stream().map(elem -> new Pair<>(elem.getLeft().toCenterPos(), Vec3d.of(elem.getRight().getVector()))).toList();
         var segmentPoints = SplineUtil.getPointPairs(from, Vec3d.of(startDir), to, Vec3d.of(endDir), transformedMidPoints);
-        
-        var dist = SplineUtil.getTotalLength(segmentPoints);
-        
-        for (var i = 0f; i < dist; i += stepSize) {
-            var progress = i / dist;
-            var center = SplineUtil.getPositionOnSpline(from, Vec3d.of(startDir), to, Vec3d.of(endDir), midpoints, progress);
-            result.add(center);
-        }
-        
-        return result;
-        
+        return ChuteBlockEntity.BeltData.create(segmentPoints);
     }
     
 }
@@ -2,9 +2,9 @@ package rearth.belts.client.renderers;
 
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.Frustum;
 import net.minecraft.client.render.RenderLayer;
 import net.minecraft.client.render.VertexConsumerProvider;
-import net.minecraft.client.render.WorldRenderer;
 import net.minecraft.client.render.block.entity.BlockEntityRenderer;
 import net.minecraft.client.render.model.json.ModelTransformationMode;
 import net.minecraft.client.texture.Sprite;
@@ -13,18 +13,28 @@ import net.minecraft.screen.PlayerScreenHandler;
 import net.minecraft.util.Colors;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.*;
+import jdk.jfr.EventType;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector3d;
+import rearth.belts.BeltsConfig;
 import rearth.belts.BlockEntitiesContent;
 import rearth.belts.blocks.ChuteBlockEntity;
-import rearth.belts.util.MathHelpers;
-import rearth.belts.util.SplineUtil;
+import rearth.belts.util.jfr.BeltMeshBuildEvent;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Optional;
 
 public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity> {
     
-    private static final HashMap<Long, Integer> lightmapCache = new HashMap<>();
+    // mesh detail levels: full detail, longer segments without curve refinement, and only the top surface
+    public static final int LOD_COUNT = 3;
+    private static final float[] LOD_SEGMENT_SIZES = {0.75f, 1.5f, 3f};
+    // checked before creating mesh events, see beginMeshEvent
+    private static final EventType MESH_EVENT_TYPE = EventType.getEventType(BeltMeshBuildEvent.class);
+    
+    // reused for the per-item spline queries, renderers are only called from the render thread
+    private final Vector3d itemPosition = new Vector3d();
+    private final Vector3d itemForward = new Vector3d();
     
     public record Vertex(float x, float y, float z, float u, float v) {
         public static Vertex create(Vec3d pos, float u, float v) {
@@ -48,35 +58,82 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
         var beltData = entity.getBeltData();
         if (beltData == null) return;
         
-        var itemRenderDistSq = 64 * 64;
+        // the whole belt is off-screen
+        var frustum = MinecraftClient.getInstance().worldRenderer.frustum;
+        if (frustum != null && !frustum.isVisible(beltData.bounds())) return;
+        
+        var itemRenderDistSq = BeltsConfig.itemRenderDistance * BeltsConfig.itemRenderDistance;
+        var itemDetailDistSq = BeltsConfig.itemDetailDistance * BeltsConfig.itemDetailDistance;
         var beltRenderDistSq = 96 * 96;
         
-        renderBeltMesh(entity, matrices, vertexConsumers, overlay, targetCandidate, beltRenderDistSq);
+        var camPos = MinecraftClient.getInstance().getCameraEntity().getPos();
+        var lod = getMeshLod(beltData.bounds(), camPos);
+        
+        var profiler = MinecraftClient.getInstance().getProfiler();
+        profiler.push("belts");
+        profiler.push("mesh");
+        renderBeltMesh(entity, matrices, vertexConsumers, overlay, targetCandidate, beltRenderDistSq, frustum, lod);
         
         // render items
-        renderBeltItems(entity, matrices, vertexConsumers, overlay, beltData, itemRenderDistSq);
+        profiler.swap("items");
+        renderBeltItems(entity, tickDelta, matrices, vertexConsumers, overlay, beltData, itemRenderDistSq, itemDetailDistSq);
         
+        profiler.swap("filter");
         renderBeltFilter(entity, matrices, vertexConsumers, light, overlay, beltRenderDistSq);
+        profiler.pop();
+        profiler.pop();
         
     }
     
-    private void renderBeltMesh(ChuteBlockEntity entity, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int overlay, Optional<ChuteBlockEntity> targetCandidate, int beltRenderDistSq) {
+    // chosen from the distance of the camera to the closest point of the belt
+    private static int getMeshLod(Box bounds, Vec3d camPos) {
+        var dx = Math.max(0, Math.max(bounds.minX - camPos.x, camPos.x - bounds.maxX));
+        var dy = Math.max(0, Math.max(bounds.minY - camPos.y, camPos.y - bounds.maxY));
+        var dz = Math.max(0, Math.max(bounds.minZ - camPos.z, camPos.z - bounds.maxZ));
+        var distSq = dx * dx + dy * dy + dz * dz;
+        
+        if (distSq > BeltsConfig.beltSimpleDistance * BeltsConfig.beltSimpleDistance) return 2;
+        if (distSq > BeltsConfig.beltDetailDistance * BeltsConfig.beltDetailDistance) return 1;
+        return 0;
+    }
+    
+    private void renderBeltMesh(ChuteBlockEntity entity, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int overlay, Optional<ChuteBlockEntity> targetCandidate, int beltRenderDistSq, @Nullable Frustum frustum, int lod) {
         matrices.push();
         matrices.translate(0, -2 / 16f + 0.08f, 0);
         
-        var entry = matrices.peek();
-        var modelMatrix = entry.getPositionMatrix();
-        var consumer = vertexConsumers.getBuffer(RenderLayer.getSolid());
-        
-        var lightRefreshInterval = 82;
-        
-        var quads = getOrComputeModel(entity, targetCandidate.get());
+        var quads = getOrComputeModel(entity, targetCandidate.get(), lod);
         if (quads == null) {
             matrices.pop();
             return;
         }
         
-        var lastLight = WorldRenderer.getLightmapCoordinates(entity.getWorld(), entity.getPos());
+        if (BeltMesh.isSupported() && frustum != null) {
+            if (entity.bakedMeshes == null)
+                entity.bakedMeshes = new BeltMesh[LOD_COUNT];
+            if (entity.bakedMeshes[lod] == null)
+                entity.bakedMeshes[lod] = new BeltMesh();
+            
+            var mesh = entity.bakedMeshes[lod];
+            var event = beginMeshEvent();
+            if (mesh.update(quads, entity.getWorld(), entity.getPos()) && event != null) {
+                fillMeshEvent(event, BeltMeshBuildEvent.STAGE_UPLOAD, entity, lod, quads);
+                event.commit();
+            }
+            mesh.draw(matrices, frustum);
+        } else {
+            renderBeltQuads(entity, matrices, vertexConsumers, overlay, quads, beltRenderDistSq);
+        }
+        
+        matrices.pop();
+    }
+    
+    // fallback for shader packs, emits all quads each frame
+    private static void renderBeltQuads(ChuteBlockEntity entity, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int overlay, Quad[] quads, int beltRenderDistSq) {
+        var entry = matrices.peek();
+        var modelMatrix = entry.getPositionMatrix();
+        var consumer = vertexConsumers.getBuffer(RenderLayer.getSolid());
+        
+        var lastLight = BeltLightCache.getLight(entity.getWorld(), entity.getPos());
         
         for (var quad : quads) {
             
@@ -86,10 +143,7 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
             var camDist = MinecraftClient.getInstance().getCameraEntity().getPos().squaredDistanceTo(Vec3d.of(worldPos));
             if (camDist > beltRenderDistSq) continue;
             
-            var worldLight = lightmapCache.computeIfAbsent(quad.worldPos.asLong(), pos -> WorldRenderer.getLightmapCoordinates(entity.getWorld(), worldPos));
-            if (entity.getWorld().getTime() % lightRefreshInterval == 0) {
-                lightmapCache.put(quad.worldPos.asLong(), WorldRenderer.getLightmapCoordinates(entity.getWorld(), quad.worldPos));
-            }
+            var worldLight = BeltLightCache.getLight(entity.getWorld(), worldPos);
             
             var renderedVertex = quad.a;
             consumer.vertex(modelMatrix, renderedVertex.x, renderedVertex.y, renderedVertex.z)
@@ -125,23 +179,54 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
             
             lastLight = worldLight;
         }
-        
-        matrices.pop();
     }
     
-    private Quad[] getOrComputeModel(ChuteBlockEntity entity, ChuteBlockEntity target) {
+    private Quad[] getOrComputeModel(ChuteBlockEntity entity, ChuteBlockEntity target, int lod) {
 
 //        if (true) {
-//            return createSplineModel(entity, target);
+//            return createSplineModel(entity, target, lod);
 //        }
         
-        if (entity.renderedModel == null)
-            entity.renderedModel = createSplineModel(entity, target);
+        if (entity.renderedModels == null)
+            entity.renderedModels = new Quad[LOD_COUNT][];
         
-        return entity.renderedModel;
+        if (entity.renderedModels[lod] == null) {
+            var profiler = MinecraftClient.getInstance().getProfiler();
+            profiler.push("buildModel");
+            var event = beginMeshEvent();
+            
+            entity.renderedModels[lod] = createSplineModel(entity, target, lod);
+            
+            if (event != null) {
+                fillMeshEvent(event, BeltMeshBuildEvent.STAGE_MODEL, entity, lod, entity.renderedModels[lod]);
+                event.commit();
+            }
+            profiler.pop();
+        }
+        
+        return entity.renderedModels[lod];
     }
     
-    private static Quad[] createSplineModel(ChuteBlockEntity entity, ChuteBlockEntity target) {
+    // returns null while the event isn't recorded, so no event is allocated per belt and frame
+    private static @Nullable BeltMeshBuildEvent beginMeshEvent() {
+        if (!MESH_EVENT_TYPE.isEnabled()) return null;
+        
+        var event = new BeltMeshBuildEvent();
+        event.begin();
+        return event;
+    }
+    
+    private static void fillMeshEvent(BeltMeshBuildEvent event, String stage, ChuteBlockEntity entity, int lod, @Nullable Quad[] quads) {
+        var beltData = entity.getBeltData();
+        event.stage = stage;
+        event.pos = entity.getPos().toShortString();
+        event.lod = lod;
+        event.beltLength = beltData != null ? beltData.totalLength() : 0;
+        event.quads = quads != null ? quads.length : 0;
+        event.items = entity.getItemCount();
+    }
+    
+    private static Quad[] createSplineModel(ChuteBlockEntity entity, ChuteBlockEntity target, int lod) {
         
         var sprite = MinecraftClient.getInstance().getSpriteAtlas(PlayerScreenHandler.BLOCK_ATLAS_TEXTURE)
                        .apply(Identifier.of("belts", "block/conveyorbelt"));
@@ -150,7 +235,8 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
         var beltData = entity.getBeltData();
         if (beltData == null) return null;
         
-        var segmentSize = 0.75f;
+        var segmentSize = LOD_SEGMENT_SIZES[lod];
+        var withSkirts = lod < 2;
         var segmentCount = (int) Math.ceil(beltData.totalLength() / segmentSize);
         var lineWidth = 0.33f;
         
@@ -164,17 +250,21 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
         var lastRight = localStart.add(beginRight.multiply(lineWidth));
         var lastLeft = localStart.add(beginRight.multiply(-lineWidth));
         
+        // the points come from the sampled spline of the belt data, so the mesh matches the item positions exactly
+        var center = entity.getPos().toCenterPos();
+        var point = new Vector3d();
+        
         for (int i = 0; i < segmentCount; i++) {
             
             var last = i == segmentCount - 1;
             var progress = i / (float) segmentCount;
             var nextProgress = (i + 1) / (float) segmentCount;
-            var worldPoint = SplineUtil.getPositionOnSpline(beltData, progress);
-            var localPoint = worldPoint.subtract(entity.getPos().toCenterPos());
-            var worldPointNext = SplineUtil.getPositionOnSpline(beltData, nextProgress);
-            var localPointNext = worldPointNext.subtract(entity.getPos().toCenterPos());
+            beltData.getPosition(progress, point);
+            var localPoint = new Vec3d(point.x - center.x, point.y - center.y, point.z - center.z);
+            beltData.getPosition(nextProgress, point);
+            var localPointNext = new Vec3d(point.x - center.x, point.y - center.y, point.z - center.z);
             
-            var worldPos = BlockPos.ofFloored(worldPointNext.add(0.5f, 0, 0.5f));
+            var worldPos = BlockPos.ofFloored(point.x + 0.5f, point.y, point.z + 0.5f);
             
             var direction = localPointNext.subtract(localPoint);
             var cross = direction.crossProduct(new Vec3d(0, 1, 0)).normalize();
@@ -189,10 +279,10 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
             var curveStrength = 1 - Math.abs(dirA.dotProduct(dirB));
             
             // split into 2 segments for strong curved segments
-            if (curveStrength > 0.025) {
+            if (curveStrength > 0.025 && lod == 0) {
                 var midProgress = (i + 0.5f) / (float) segmentCount;
-                var worldPointMid = SplineUtil.getPositionOnSpline(beltData, midProgress);
-                var localPointMid = worldPointMid.subtract(entity.getPos().toCenterPos());
+                beltData.getPosition(midProgress, point);
+                var localPointMid = new Vec3d(point.x - center.x, point.y - center.y, point.z - center.z);
                 
                 var directionMid = localPointMid.subtract(localPoint);
                 var crossMid = directionMid.crossProduct(new Vec3d(0, 1, 0)).normalize();
@@ -208,10 +298,10 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
                 nextRight = localPointNext.add(cross.multiply(lineWidth)).add(0.5f, 0.5f, 0.5f);
                 nextLeft = localPointNext.add(cross.multiply(-lineWidth)).add(0.5f, 0.5f, 0.5f);
                 
-                addSegmentVertices(midRight, lastRight, midLeft, lastLeft, sprite, worldPos, result, 0, 0.5f);
-                addSegmentVertices(nextRight, midRight, nextLeft, midLeft, sprite, worldPos, result, 0.5f, 1f);
+                addSegmentVertices(midRight, lastRight, midLeft, lastLeft, sprite, worldPos, result, 0, 0.5f, withSkirts);
+                addSegmentVertices(nextRight, midRight, nextLeft, midLeft, sprite, worldPos, result, 0.5f, 1f, withSkirts);
             } else {
-                addSegmentVertices(nextRight, lastRight, nextLeft, lastLeft, sprite, worldPos, result, 0, 1);
+                addSegmentVertices(nextRight, lastRight, nextLeft, lastLeft, sprite, worldPos, result, 0, 1, withSkirts);
             }
             lastRight = nextRight;
             lastLeft = nextLeft;
@@ -222,7 +312,7 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
         return result.toArray(Quad[]::new);
     }
     
-    private static void addSegmentVertices(Vec3d nextRight, Vec3d lastRight, Vec3d nextLeft, Vec3d lastLeft, Sprite sprite, BlockPos worldPos, ArrayList<Quad> result, float vStart, float vEnd) {
+    private static void addSegmentVertices(Vec3d nextRight, Vec3d lastRight, Vec3d nextLeft, Vec3d lastLeft, Sprite sprite, BlockPos worldPos, ArrayList<Quad> result, float vStart, float vEnd, boolean withSkirts) {
         
         var skirtHeight = 0.15f;
         
@@ -240,6 +330,9 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
         var quad = new Quad(topRight, topLeft, botLeft, botRight, worldPos);
         result.add(quad);
         
+        // the sides and bottom are not visible from far away
+        if (!withSkirts) return;
+        
         // right skirt
         uMin = sprite.getFrameU(0);
         uMax = sprite.getFrameU(2 / 16f);
@@ -283,57 +376,55 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
         result.add(quad);
     }
     
-    private void renderBeltItems(ChuteBlockEntity entity, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int overlay, ChuteBlockEntity.BeltData beltData, int itemRenderDistSq) {
+    private void renderBeltItems(ChuteBlockEntity entity, float tickDelta, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int overlay, ChuteBlockEntity.BeltData beltData, int itemRenderDistSq, int itemDetailDistSq) {
         var renderedItems = getRenderedStacks(entity);
         
+        var cam = MinecraftClient.getInstance().getCameraEntity();
+        var camPos = cam.getPos();
+        var camLookDir = cam.getRotationVector();
+        var origin = entity.getPos().toCenterPos();
+        var itemRenderer = MinecraftClient.getInstance().getItemRenderer();
+        
         for (var itemData : renderedItems) {
             var renderedStack = itemData.stack;
-            var renderedProgress = itemData.progress;
-            var delta = 0.05f / beltData.totalLength();
-            var nextProgress = itemData.progress + delta;
+            var renderedProgress = entity.getItemProgress(itemData, tickDelta);
             
-            var worldPoint = SplineUtil.getPositionOnSpline(beltData, renderedProgress);
-            var cam = MinecraftClient.getInstance().getCameraEntity();
+            var worldPoint = beltData.getPosition(renderedProgress, itemPosition);
             
             // abort early is camera is too far away
-            var camDist = cam.getPos().squaredDistanceTo(worldPoint);
+            var offsetX = worldPoint.x - camPos.x;
+            var offsetY = worldPoint.y - camPos.y;
+            var offsetZ = worldPoint.z - camPos.z;
+            var camDist = offsetX * offsetX + offsetY * offsetY + offsetZ * offsetZ;
             if (camDist > itemRenderDistSq) continue;
             
+            // thin out distant items. Based on the id, so the same items stay visible while moving
+            if (camDist > itemDetailDistSq && (itemData.id & 1) != 0) continue;
+            
             // abort if item is behind player (very basic frustum culling)
-            var camLookDir = cam.getRotationVector();
-            var itemOffset = worldPoint.subtract(cam.getPos());
             // negative dot product means the item is behind
-            if (camDist > 1f && camLookDir.dotProduct(itemOffset.normalize()) < 0)
+            if (camDist > 1f && camLookDir.x * offsetX + camLookDir.y * offsetY + camLookDir.z * offsetZ < 0)
                 continue;
             
-            
-            var nextWorldPoint = SplineUtil.getPositionOnSpline(beltData, nextProgress);
-            var localPoint = worldPoint.subtract(entity.getPos().toCenterPos());
-            
-            var lastRenderPosition = entity.lastRenderedPositions.getOrDefault(itemData.id, localPoint);
-            var renderPosition = MathHelpers.lerp(lastRenderPosition, localPoint, 0.03f);
-            
-            entity.lastRenderedPositions.put(itemData.id, renderPosition);
-            
-            var forward = nextWorldPoint.subtract(worldPoint);
-            var flatForward = new Vec3d(forward.x, 0, forward.z).normalize();
-            var dot = new Vec3d(1, 0, 0).dotProduct(flatForward);
-            var angleRad = Math.acos(dot);
-            var angleUp = Math.acos(forward.normalize().dotProduct(flatForward));
+            var forward = beltData.getTangent(renderedProgress, itemForward);
+            var flatLength = Math.sqrt(forward.x * forward.x + forward.z * forward.z);
+            var flatX = flatLength > 0 ? forward.x / flatLength : 0;
+            var angleRad = Math.acos(flatX);
+            var angleUp = Math.acos(Math.min(flatLength, 1));
             
             if (forward.y < 0)
                 angleUp = -angleUp;
             
-            if (flatForward.z > 0) {
+            if (forward.z > 0) {
                 angleRad = -angleRad;
             }
             
             matrices.push();
-            matrices.translate(renderPosition.x, renderPosition.y, renderPosition.z);
+            matrices.translate(worldPoint.x - origin.x, worldPoint.y - origin.y, worldPoint.z - origin.z);
             matrices.translate(0.5f, 0.8f - 3 / 16f, 0.5f);
             
-            var bakedmodel = MinecraftClient.getInstance().getItemRenderer().getModel(renderedStack, entity.getWorld(), null, 0);
-            var useItemTransform = !bakedmodel.getQuads(null, null, entity.getWorld().random).isEmpty();
+            var bakedmodel = itemRenderer.getModel(renderedStack, entity.getWorld(), null, 0);
+            var useItemTransform = ItemQuadCache.hasQuads(bakedmodel);
             
             if (useItemTransform) {
                 matrices.translate(0, -2 / 16f, 0);
@@ -347,26 +438,13 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
             
             matrices.scale(0.6f, 0.6f, 0.6f);
             
-            var worldPos = BlockPos.ofFloored(worldPoint);
-            
-            var worldLight = lightmapCache.computeIfAbsent(worldPos.asLong(), pos -> WorldRenderer.getLightmapCoordinates(entity.getWorld(), worldPos));
+            var worldPos = BlockPos.asLong(MathHelper.floor(worldPoint.x), MathHelper.floor(worldPoint.y), MathHelper.floor(worldPoint.z));
+            var worldLight = BeltLightCache.getLight(entity.getWorld(), worldPos);
             
-            MinecraftClient.getInstance().getItemRenderer().renderItem(
-              renderedStack,
-              ModelTransformationMode.FIXED,
-              worldLight,
-              overlay,
-              matrices,
-              vertexConsumers,
-              entity.getWorld(),
-              0
-            );
+            itemRenderer.renderItem(renderedStack, ModelTransformationMode.FIXED, false, matrices, vertexConsumers, worldLight, overlay, bakedmodel);
             
             matrices.pop();
         }
-        
-        if (entity.getWorld().getTime() % 104 == 0)
-            cleanPositionsCache(entity);
     }
     
     
@@ -420,20 +498,6 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
         return entity.getMovingItems();
     }
     
-    // remove unused cache indices to avoid memory leaks
-    private void cleanPositionsCache(ChuteBlockEntity entity) {
-        var active = getRenderedStacks(entity);
-        var cache = entity.lastRenderedPositions;
-        var usedData = new HashMap<Short, Vec3d>();
-        for (var movedItem : active) {
-            var lastEntry = cache.getOrDefault(movedItem.id, Vec3d.ZERO);
-            usedData.put(movedItem.id, lastEntry);
-        }
-        
-        cache.clear();
-        cache.putAll(usedData);
-    }
-    
     @Override
     public boolean rendersOutsideBoundingBox(ChuteBlockEntity blockEntity) {
         return true;
@@ -446,8 +510,9 @@ public class ChuteBeltRenderer implements BlockEntityRenderer<ChuteBlockEntity>
     
     // overrides NF mixin
     public Box getRenderBoundingBox(BlockEntity blockEntity) {
-        return new Box(
-          Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY
-        );
+        // the belt bounds also contain the chute itself
+        if (blockEntity instanceof ChuteBlockEntity chute && chute.getBeltData() != null)
+            return chute.getBeltData().bounds();
+        return new Box(blockEntity.getPos());
     }
 }
@@ -0,0 +1,29 @@
+package rearth.belts.client.renderers;
+
+import it.unimi.dsi.fastutil.objects.Reference2BooleanOpenHashMap;
+import net.minecraft.client.render.model.BakedModel;
+import net.minecraft.util.math.random.Random;
+
+// Caches whether an item model has direct quads, so the belt renderer doesn't query the model quads for every item and frame.
+// Only used from the render thread, cleared on resource reloads.
+public final class ItemQuadCache {
+    
+    // keyed by the resolved model, items with model overrides (e.g. damage or components) can resolve to models with and without quads
+    private static final Reference2BooleanOpenHashMap<BakedModel> HAS_QUADS = new Reference2BooleanOpenHashMap<>();
+    private static final Random RANDOM = Random.create();
+    
+    // block items without any direct quads (e.g. chests) use a different transform on the belt
+    public static boolean hasQuads(BakedModel model) {
+        if (HAS_QUADS.containsKey(model))
+            return HAS_QUADS.getBoolean(model);
+        
+        RANDOM.setSeed(42);
+        var result = !model.getQuads(null, null, RANDOM).isEmpty();
+        HAS_QUADS.put(model, result);
+        return result;
+    }
+    
+    public static void clearCaches() {
+        HAS_QUADS.clear();
+    }
+}
@@ -0,0 +1,63 @@
+package rearth.belts.items;
+
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.ItemUsageContext;
+import net.minecraft.item.tooltip.TooltipType;
+import net.minecraft.text.Text;
+import net.minecraft.util.ActionResult;
+import net.minecraft.util.Formatting;
+import rearth.belts.BeltsConfig;
+import rearth.belts.BlockEntitiesContent;
+import rearth.belts.blocks.BeltTier;
+
+import java.util.List;
+
+// raises the tier of the belt at the clicked chute
+public class BeltUpgradeItem extends Item {
+    
+    private final BeltTier tier;
+    
+    public BeltUpgradeItem(BeltTier tier, Settings settings) {
+        super(settings);
+        this.tier = tier;
+    }
+    
+    @Override
+    public ActionResult useOnBlock(ItemUsageContext context) {
+        
+        var world = context.getWorld();
+        var chuteCandidate = world.getBlockEntity(context.getBlockPos(), BlockEntitiesContent.CHUTE_BLOCK.get());
+        if (chuteCandidate.isEmpty()) return super.useOnBlock(context);
+        
+        if (world.isClient) return ActionResult.SUCCESS;
+        
+        var player = context.getPlayer();
+        if (chuteCandidate.get().applyUpgrade(tier, player) && (player == null || !player.isCreative()))
+            context.getStack().decrement(1);
+        
+        return ActionResult.SUCCESS;
+    }
+    
+    @Override
+    public void appendTooltip(ItemStack stack, TooltipContext context, List<Text> tooltip, TooltipType type) {
+        
+        // the values of the server, the local config may differ
+        var settings = BeltsConfig.getServerTierSettings(tier);
+        tooltip.add(Text.translatable("item.belts.belt_upgrade.stats", formatNumber(settings.speed()), formatNumber(20f / settings.extractionInterval()), settings.stackSize()).formatted(Formatting.GOLD));
+        
+        var showExtra = Screen.hasControlDown();
+        if (showExtra) {
+            tooltip.add(Text.translatable("item.belts.belt_upgrade.tooltip").formatted(Formatting.GRAY));
+        } else {
+            tooltip.add(Text.translatable("message.belts.show_extra").formatted(Formatting.GRAY, Formatting.ITALIC));
+        }
+        
+        super.appendTooltip(stack, context, tooltip, type);
+    }
+    
+    private static String formatNumber(float value) {
+        return String.format("%.1f", value);
+    }
+}
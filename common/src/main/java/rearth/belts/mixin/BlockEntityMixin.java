@@ -0,0 +1,27 @@
+package rearth.belts.mixin;
+
+import net.minecraft.block.entity.BlockEntity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import rearth.belts.util.ChangeCounter;
+
+// used by the item api wrappers as change version of inventories, so belts can skip scanning unchanged sources
+@Mixin(BlockEntity.class)
+public abstract class BlockEntityMixin implements ChangeCounter {
+    
+    @Unique
+    private long belts$changeCount;
+    
+    @Inject(method = "markDirty()V", at = @At("HEAD"))
+    private void belts$countChange(CallbackInfo ci) {
+        belts$changeCount++;
+    }
+    
+    @Override
+    public long belts$getChangeCount() {
+        return belts$changeCount;
+    }
+}
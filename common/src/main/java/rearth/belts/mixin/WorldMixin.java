@@ -0,0 +1,23 @@
+package rearth.belts.mixin;
+
+import net.minecraft.block.Block;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import rearth.belts.blocks.BeltNetworkManager;
+
+// inventories call updateComparators when their content changes, which is used to wake up sleeping belts next to them.
+// Chutes register the inventory behind them, so no blocks are looked up for inventories without a chute.
+@Mixin(World.class)
+public abstract class WorldMixin {
+    
+    @Inject(method = "updateComparators", at = @At("HEAD"))
+    private void belts$wakeAdjacentChutes(BlockPos pos, Block block, CallbackInfo ci) {
+        if ((Object) this instanceof ServerWorld world)
+            BeltNetworkManager.onInventoryChanged(world, pos);
+    }
+}
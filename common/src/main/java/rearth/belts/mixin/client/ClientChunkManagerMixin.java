@@ -0,0 +1,20 @@
+package rearth.belts.mixin.client;
+
+import net.minecraft.client.world.ClientChunkManager;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.LightType;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import rearth.belts.client.renderers.BeltLightCache;
+
+@Mixin(ClientChunkManager.class)
+public abstract class ClientChunkManagerMixin {
+    
+    // invalidates the cached belt light in the changed section
+    @Inject(method = "onLightUpdate", at = @At("HEAD"))
+    private void belts$onLightUpdate(LightType type, ChunkSectionPos pos, CallbackInfo ci) {
+        BeltLightCache.onLightUpdate(pos.asLong());
+    }
+}
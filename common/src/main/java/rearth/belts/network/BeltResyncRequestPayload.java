@@ -0,0 +1,19 @@
+package rearth.belts.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.math.BlockPos;
+import rearth.belts.Belts;
+
+// sent by the client when its belt state no longer matches the checksum of a BeltSyncPayload
+public record BeltResyncRequestPayload(BlockPos pos) implements CustomPayload {
+    
+    public static final CustomPayload.Id<BeltResyncRequestPayload> ID = new CustomPayload.Id<>(Belts.id("belt_resync"));
+    public static final PacketCodec<ByteBuf, BeltResyncRequestPayload> CODEC = BlockPos.PACKET_CODEC.xmap(BeltResyncRequestPayload::new, BeltResyncRequestPayload::pos);
+    
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
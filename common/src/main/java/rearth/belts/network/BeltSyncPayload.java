@@ -0,0 +1,85 @@
+package rearth.belts.network;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.math.BlockPos;
+import rearth.belts.Belts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// incremental belt update. Only contains the item changes of a single server tick, the client moves items on its own in between.
+public record BeltSyncPayload(BlockPos pos, long tick, int checksum, List<Event> events) implements CustomPayload {
+    
+    public static final CustomPayload.Id<BeltSyncPayload> ID = new CustomPayload.Id<>(Belts.id("belt_sync"));
+    public static final PacketCodec<RegistryByteBuf, BeltSyncPayload> CODEC = PacketCodec.of(BeltSyncPayload::write, BeltSyncPayload::read);
+    
+    private void write(RegistryByteBuf buf) {
+        buf.writeBlockPos(pos);
+        buf.writeVarLong(tick);
+        buf.writeInt(checksum);
+        buf.writeVarInt(events.size());
+        for (var event : events) {
+            buf.writeByte(event.type().ordinal());
+            buf.writeShort(event.id());
+            switch (event.type()) {
+                case INSERT -> {
+                    buf.writeFloat(event.progress());
+                    ItemStack.OPTIONAL_PACKET_CODEC.encode(buf, event.stack());
+                }
+                case BLOCKED -> buf.writeFloat(event.progress());
+                case REMOVE -> {
+                }
+            }
+        }
+    }
+    
+    private static BeltSyncPayload read(RegistryByteBuf buf) {
+        var pos = buf.readBlockPos();
+        var tick = buf.readVarLong();
+        var checksum = buf.readInt();
+        var count = buf.readVarInt();
+        var events = new ArrayList<Event>(count);
+        for (int i = 0; i < count; i++) {
+            var type = EventType.values()[buf.readByte()];
+            var id = buf.readShort();
+            events.add(switch (type) {
+                case INSERT -> {
+                    var progress = buf.readFloat();
+                    yield Event.insert(id, progress, ItemStack.OPTIONAL_PACKET_CODEC.decode(buf));
+                }
+                case BLOCKED -> Event.blocked(id, buf.readFloat());
+                case REMOVE -> Event.remove(id);
+            });
+        }
+        
+        return new BeltSyncPayload(pos, tick, checksum, events);
+    }
+    
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+    
+    public enum EventType {
+        INSERT, REMOVE, BLOCKED
+    }
+    
+    // all events are keyed by the BeltItem id. Progress is only used for INSERT and BLOCKED, the stack only for INSERT.
+    public record Event(EventType type, short id, float progress, ItemStack stack) {
+        
+        public static Event insert(short id, float progress, ItemStack stack) {
+            return new Event(EventType.INSERT, id, progress, stack);
+        }
+        
+        public static Event remove(short id) {
+            return new Event(EventType.REMOVE, id, 0, ItemStack.EMPTY);
+        }
+        
+        public static Event blocked(short id, float progress) {
+            return new Event(EventType.BLOCKED, id, progress, ItemStack.EMPTY);
+        }
+    }
+}
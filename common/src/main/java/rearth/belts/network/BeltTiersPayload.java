@@ -0,0 +1,22 @@
+package rearth.belts.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.network.packet.CustomPayload;
+import rearth.belts.Belts;
+import rearth.belts.blocks.BeltTier;
+
+import java.util.List;
+
+// sent to joining players, so tooltips show the tier values of the server config instead of the local one. In ordinal order of BeltTier.
+public record BeltTiersPayload(List<BeltTier.Settings> tiers) implements CustomPayload {
+    
+    public static final CustomPayload.Id<BeltTiersPayload> ID = new CustomPayload.Id<>(Belts.id("belt_tiers"));
+    public static final PacketCodec<ByteBuf, BeltTiersPayload> CODEC = BeltTier.Settings.PACKET_CODEC.collect(PacketCodecs.toList()).xmap(BeltTiersPayload::new, BeltTiersPayload::tiers);
+    
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
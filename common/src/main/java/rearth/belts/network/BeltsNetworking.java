@@ -0,0 +1,82 @@
+package rearth.belts.network;
+
+import dev.architectury.event.events.common.LifecycleEvent;
+import dev.architectury.event.events.common.PlayerEvent;
+import dev.architectury.networking.NetworkManager;
+import dev.architectury.platform.Platform;
+import dev.architectury.utils.Env;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import rearth.belts.BeltsConfig;
+import rearth.belts.BlockEntitiesContent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public final class BeltsNetworking {
+    
+    // max distance a player may request a belt resync from
+    private static final double RESYNC_RANGE_SQ = 128 * 128;
+    // minimum server ticks between two accepted resyncs of the same belt for one player. Repeated requests while the
+    // resync is still on its way are ignored.
+    private static final int RESYNC_COOLDOWN = 20;
+    // expired request times are only cleaned up once a player has this many
+    private static final int MAX_TRACKED_REQUESTS = 64;
+    
+    // server tick of the last accepted resync request, per player and belt position. Only used from the server thread.
+    private static final Map<UUID, Long2IntOpenHashMap> LAST_RESYNC_REQUESTS = new HashMap<>();
+    
+    public static void init() {
+        NetworkManager.registerReceiver(NetworkManager.Side.C2S, BeltResyncRequestPayload.ID, BeltResyncRequestPayload.CODEC, BeltsNetworking::onResyncRequest);
+        PlayerEvent.PLAYER_QUIT.register(player -> LAST_RESYNC_REQUESTS.remove(player.getUuid()));
+        PlayerEvent.PLAYER_JOIN.register(player -> NetworkManager.sendToPlayer(player, new BeltTiersPayload(BeltsConfig.getAllTierSettings())));
+        LifecycleEvent.SERVER_STOPPED.register(server -> LAST_RESYNC_REQUESTS.clear());
+        
+        // the client registers the S2C receiver itself, dedicated servers only need to know the payload type
+        if (Platform.getEnvironment() == Env.SERVER) {
+            NetworkManager.registerS2CPayloadType(BeltSyncPayload.ID, BeltSyncPayload.CODEC);
+            NetworkManager.registerS2CPayloadType(BeltTiersPayload.ID, BeltTiersPayload.CODEC);
+        }
+    }
+    
+    public static void sendToTracking(ServerWorld world, BlockPos pos, BeltSyncPayload payload) {
+        var players = world.getChunkManager().chunkLoadingManager.getPlayersWatchingChunk(new ChunkPos(pos), false);
+        if (players.isEmpty()) return;
+        NetworkManager.sendToPlayers(players, payload);
+    }
+    
+    private static void onResyncRequest(BeltResyncRequestPayload payload, NetworkManager.PacketContext context) {
+        context.queue(() -> {
+            var player = context.getPlayer();
+            if (!(player instanceof ServerPlayerEntity serverPlayer) || !(player.getWorld() instanceof ServerWorld serverWorld)) return;
+            if (player.getBlockPos().getSquaredDistance(payload.pos()) > RESYNC_RANGE_SQ) return;
+            if (!serverWorld.isChunkLoaded(payload.pos())) return;
+            
+            var chute = serverWorld.getBlockEntity(payload.pos(), BlockEntitiesContent.CHUTE_BLOCK.get());
+            if (chute.isEmpty()) return;
+            if (!acceptResyncRequest(player.getUuid(), payload.pos(), serverWorld.getServer().getTicks())) return;
+            
+            // a regular block entity update packet contains the full belt state. Other players tracking the belt are still in sync.
+            var packet = chute.get().toUpdatePacket();
+            if (packet != null)
+                serverPlayer.networkHandler.sendPacket(packet);
+        });
+    }
+    
+    // allows one resync per belt and player within the cooldown
+    private static boolean acceptResyncRequest(UUID player, BlockPos pos, int now) {
+        var requests = LAST_RESYNC_REQUESTS.computeIfAbsent(player, uuid -> new Long2IntOpenHashMap());
+        var key = pos.asLong();
+        if (requests.containsKey(key) && now - requests.get(key) < RESYNC_COOLDOWN) return false;
+        
+        if (requests.size() >= MAX_TRACKED_REQUESTS)
+            requests.long2IntEntrySet().removeIf(entry -> now - entry.getIntValue() >= RESYNC_COOLDOWN);
+        
+        requests.put(key, now);
+        return true;
+    }
+}
@@ -0,0 +1,15 @@
+package rearth.belts.util;
+
+import net.minecraft.block.entity.BlockEntity;
+import org.jetbrains.annotations.Nullable;
+
+// implemented on all block entities by the BlockEntityMixin. Counts the calls to markDirty, which inventories use to signal content changes.
+public interface ChangeCounter {
+    
+    long belts$getChangeCount();
+    
+    // -1 if there is no block entity to track
+    static long getChangeCount(@Nullable BlockEntity entity) {
+        return entity instanceof ChangeCounter counter ? counter.belts$getChangeCount() : -1;
+    }
+}
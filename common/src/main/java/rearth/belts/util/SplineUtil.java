@@ -1,72 +1,14 @@
 package rearth.belts.util;
 
-import rearth.belts.blocks.ChuteBlockEntity;
 import net.minecraft.util.Pair;
-import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.Vec3d;
+import org.joml.Vector3d;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class SplineUtil {
     
-    public static Vec3d getPositionOnSpline(ChuteBlockEntity.BeltData data, double t) {
-        return getPositionOnSpline(data.allPoints(), data.totalLength(), data.segmentLengths(), t);
-    }
-    
-    // t is in range 0-1
-    public static Vec3d getPositionOnSpline(Vec3d start, Vec3d startDir, Vec3d end, Vec3d endDir, List<Pair<BlockPos, Direction>> middlePoints, double t) {
-        
-        var transformedMidPoints = middlePoints.stream().map(elem -> new Pair<>(elem.getLeft().toCenterPos(), Vec3d.of(elem.getRight().getVector()))).toList();
-        
-        var allPairs = getPointPairs(start, startDir, end, endDir, transformedMidPoints);
-        
-        var segmentLengths = new Double[allPairs.size() - 1];
-        var totalLength = 0d;
-        for (int i = 0; i < allPairs.size() - 1; i++) {
-            var from = allPairs.get(i);
-            var to = allPairs.get(i + 1);
-            var length = getLineLength(from.getLeft(), from.getRight(), to.getLeft(), to.getRight().multiply(1));
-            segmentLengths[i] = (length);
-            totalLength += length;
-        }
-        
-        return getPositionOnSpline(allPairs, totalLength, segmentLengths, t);
-    }
-    
-    public static Vec3d getPositionOnSpline(List<Pair<Vec3d, Vec3d>> allPoints, double totalLength, Double[] segmentLengths, double t) {
-        t = Math.clamp(t, 0, 1);
-        
-        var targetLength = totalLength * t;
-        var traversedLength = 0d;
-        
-        // traverse segments, if traversed dist matches segment, get the final point along it
-        for (int i = 0; i < allPoints.size() - 1; i++) {
-            var segmentLength = segmentLengths[i];
-            
-            if (targetLength >= traversedLength && targetLength < (traversedLength + segmentLength)) {
-                var from = allPoints.get(i);
-                var to = allPoints.get(i + 1);
-                var offset = targetLength - traversedLength;
-                var delta = offset / segmentLength;
-                
-                var mappedT = remapProgress(delta);
-                
-                return getPointOnHermiteSpline(from.getLeft(), from.getRight().multiply(segmentLength * 1.5f), to.getLeft(), to.getRight().multiply(segmentLength * 1.5F), mappedT);
-            } else {
-                traversedLength += segmentLength;
-            }
-            
-        }
-        
-        return allPoints.getLast().getLeft();
-    }
-    
-    private static double remapProgress(double x) {
-        return 0.4791667*x + 1.5625*(x*x) - 1.041667*(x*x*x);
-    }
-    
     // approximates segment length by sampling 2 points along the line, and returning the total distance
     public static double getLineLength(Vec3d from, Vec3d fromTangent, Vec3d to, Vec3d toTangent) {
         
@@ -81,21 +23,6 @@ public class SplineUtil {
         return from.distanceTo(midPointA) + midPointA.distanceTo(midPointB) + midPointB.distanceTo(to);
     }
     
-    public static double getTotalLength(List<Pair<Vec3d, Vec3d>> points) {
-        
-        var res = 0d;
-        
-        for (int i = 0; i < points.size() - 1; i++) {
-            var current = points.get(i);
-            var next = points.get(i + 1);
-            var segmentLength = getLineLength(current.getLeft(), current.getRight(), next.getLeft(), next.getRight());
-            res += segmentLength;
-        }
-        
-        return res;
-        
-    }
-    
     // calculates the facing of the middle points automatically. Returns a pair for each point with the desired tangent (to the next point)
     public static List<Pair<Vec3d, Vec3d>> getPointPairs(Vec3d start, Vec3d startDir, Vec3d end, Vec3d endDir, List<Pair<Vec3d, Vec3d>> middlePoints) {
         
@@ -167,4 +94,31 @@ public class SplineUtil {
         return termP0.add(termM0).add(termP1).add(termM1);
     }
     
+    /**
+     * Allocation free variant of {@link #getPointOnHermiteSpline(Vec3d, Vec3d, Vec3d, Vec3d, double)}, used in per-frame code.
+     * All vectors are passed as raw components, the result is written into the given output vector.
+     *
+     * @param out the vector receiving the point on the spline
+     * @return the out vector
+     */
+    public static Vector3d getPointOnHermiteSpline(double ax, double ay, double az, double tax, double tay, double taz,
+                                                   double bx, double by, double bz, double tbx, double tby, double tbz,
+                                                   double t, Vector3d out) {
+        if (t < 0.0) t = 0.0;
+        if (t > 1.0) t = 1.0;
+        
+        double t2 = t * t;
+        double t3 = t2 * t;
+        
+        double h00 = 2.0 * t3 - 3.0 * t2 + 1.0;
+        double h10 = t3 - 2.0 * t2 + t;
+        double h01 = -2.0 * t3 + 3.0 * t2;
+        double h11 = t3 - t2;
+        
+        return out.set(
+          h00 * ax + h10 * tax + h01 * bx + h11 * tbx,
+          h00 * ay + h10 * tay + h01 * by + h11 * tby,
+          h00 * az + h10 * taz + h01 * bz + h11 * tbz);
+    }
+    
 }
@@ -0,0 +1,41 @@
+package rearth.belts.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// creation of a belt model, or the upload of its vertex buffers. Recorded on the render thread.
+@Name("belts.BeltMeshBuild")
+@Label("Belt Mesh Build")
+@Description("Creation or upload of the mesh of one belt")
+@Category({"Minecraft", "Belts"})
+@StackTrace(false)
+public class BeltMeshBuildEvent extends Event {
+    
+    public static final String STAGE_MODEL = "model";
+    public static final String STAGE_UPLOAD = "upload";
+    
+    @Label("Stage")
+    public String stage;
+    
+    @Label("Position")
+    @Description("Position of the source chute of the belt")
+    public String pos;
+    
+    @Label("Level Of Detail")
+    public int lod;
+    
+    @Label("Belt Length")
+    @Description("Length of the belt in blocks")
+    public double beltLength;
+    
+    @Label("Quads")
+    public int quads;
+    
+    @Label("Items")
+    @Description("Items on the belt")
+    public int items;
+}
@@ -0,0 +1,32 @@
+package rearth.belts.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// one server tick of all belts in a world, recorded by the BeltNetworkManager
+@Name("belts.BeltTick")
+@Label("Belt Tick")
+@Description("Simulation of all belts of a world in one server tick")
+@Category({"Minecraft", "Belts"})
+@StackTrace(false)
+public class BeltTickEvent extends Event {
+    
+    @Label("World")
+    public String world;
+    
+    @Label("Belts")
+    @Description("Registered belts, including sleeping and suspended ones")
+    public int belts;
+    
+    @Label("Active Belts")
+    @Description("Belts that moved their items in this tick")
+    public int activeBelts;
+    
+    @Label("Items")
+    @Description("Items on the active belts")
+    public int items;
+}
@@ -0,0 +1,85 @@
+package rearth.belts.blocks;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// the queue only needs the item ids and progress, so the items are created without stacks
+class BeltItemQueueTest {
+    
+    private static final double SPACING = 0.1;
+    private static final float EPSILON = 1e-5f;
+    
+    // items are added from the belt end to the belt start
+    private static BeltItemQueue createQueue(float... progresses) {
+        var queue = new BeltItemQueue();
+        for (int i = 0; i < progresses.length; i++)
+            queue.addFirst(new ChuteBlockEntity.BeltItem((short) i, null), progresses[i]);
+        return queue;
+    }
+    
+    private static void assertOrdered(BeltItemQueue queue) {
+        var last = Float.NEGATIVE_INFINITY;
+        for (var item : queue) {
+            var progress = queue.getProgress(item);
+            assertTrue(progress >= last, "items are not ordered by their position");
+            assertTrue(progress <= 1 + EPSILON, "item moved past the belt end");
+            last = progress;
+        }
+    }
+    
+    @Test
+    void largeStepMovesItemsIntoTheirQueueSlots() {
+        var queue = createQueue(0.3f, 0.2f, 0.1f);
+        
+        // the target refuses everything, so nothing is removed
+        queue.advance(10, SPACING, null, true);
+        
+        assertEquals(3, queue.getQueuedCount());
+        var expected = new float[] {0.8f, 0.9f, 1f};
+        var index = 0;
+        for (var item : queue)
+            assertEquals(expected[index++], queue.getProgress(item), EPSILON);
+    }
+    
+    @Test
+    void newItemsStayBehindQueueAfterLargeStep() {
+        var queue = createQueue(0.3f, 0.2f, 0.1f);
+        queue.advance(10, SPACING, null, true);
+        
+        // a new item enters and moves while the target still refuses
+        queue.addFirst(new ChuteBlockEntity.BeltItem((short) 3, null), 0);
+        for (int i = 0; i < 100; i++) {
+            queue.advance(0.05, SPACING, null);
+            assertOrdered(queue);
+        }
+        
+        // the new item queues up behind the others, within one step of its slot
+        assertEquals(4, queue.getQueuedCount());
+        var progress = queue.getProgress(queue.peekFirst());
+        assertTrue(progress > 0.7f - 0.05f - EPSILON && progress <= 0.7f + EPSILON);
+    }
+    
+    @Test
+    void releasedItemsContinueFromTheirQueueSlots() {
+        var queue = createQueue(0.3f, 0.2f, 0.1f);
+        queue.advance(10, SPACING, null, true);
+        
+        // one item is delivered, the others are released packed at the belt end
+        queue.removeLast();
+        queue.releaseQueue();
+        assertOrdered(queue);
+        assertEquals(0.9f, queue.getProgress(queue.peekLast()), EPSILON);
+    }
+    
+    @Test
+    void itemsPastTheirSlotAreNotMovedBack() {
+        // more items than queue slots fit between them and the belt end
+        var queue = createQueue(0.95f, 0.9f, 0.85f);
+        queue.advance(10, 0.5, null, true);
+        
+        assertOrdered(queue);
+        assertEquals(0.85f, queue.getProgress(queue.peekFirst()), EPSILON);
+    }
+}
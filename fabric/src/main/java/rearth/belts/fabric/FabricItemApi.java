@@ -3,35 +3,74 @@ package rearth.belts.fabric;
 import rearth.belts.Belts;
 import rearth.belts.api.item.BlockItemApi;
 import rearth.belts.api.item.ItemApi;
+import rearth.belts.util.ChangeCounter;
+import net.fabricmc.fabric.api.lookup.v1.block.BlockApiCache;
 import net.fabricmc.fabric.api.transfer.v1.item.ItemStorage;
 import net.fabricmc.fabric.api.transfer.v1.item.ItemVariant;
 import net.fabricmc.fabric.api.transfer.v1.storage.SlottedStorage;
 import net.fabricmc.fabric.api.transfer.v1.storage.Storage;
+import net.fabricmc.fabric.api.transfer.v1.storage.StorageView;
 import net.fabricmc.fabric.api.transfer.v1.transaction.Transaction;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.item.ItemStack;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.world.World;
 import org.jetbrains.annotations.Nullable;
 
+
 public class FabricItemApi implements BlockItemApi {
     
     @Override
     public ItemApi.InventoryStorage find(World world, BlockPos pos, @Nullable BlockState state, @Nullable BlockEntity entity, @Nullable Direction direction) {
         var candidate = ItemStorage.SIDED.find(world, pos, state, entity, direction);
         if (candidate == null) return null;
-        return new FabricStorageWrapper(candidate);
+        return new FabricStorageWrapper(candidate, entity != null ? entity : world.getBlockEntity(pos));
+    }
+    
+    @Override
+    public Cache createCache(ServerWorld world, BlockPos pos, Direction direction) {
+        return new FabricStorageCache(BlockApiCache.create(ItemStorage.SIDED, world, pos), direction);
+    }
+    
+    // reuses the wrapper as long as the cached storage stays the same
+    public static class FabricStorageCache implements Cache {
+        
+        private final BlockApiCache<Storage<ItemVariant>, Direction> cache;
+        private final Direction direction;
+        private FabricStorageWrapper lastWrapper;
+        
+        public FabricStorageCache(BlockApiCache<Storage<ItemVariant>, Direction> cache, Direction direction) {
+            this.cache = cache;
+            this.direction = direction;
+        }
+        
+        @Override
+        public @Nullable ItemApi.InventoryStorage find() {
+            var candidate = cache.find(direction);
+            if (candidate == null) {
+                lastWrapper = null;
+                return null;
+            }
+            
+            if (lastWrapper == null || lastWrapper.storage != candidate)
+                lastWrapper = new FabricStorageWrapper(candidate, cache.getBlockEntity());
+            return lastWrapper;
+        }
     }
     
     // used to interact with storages from other mods
     public static class FabricStorageWrapper implements ItemApi.InventoryStorage {
         
         public final Storage<ItemVariant> storage;
+        // block entity providing the storage, if any
+        private final @Nullable BlockEntity owner;
         
-        public FabricStorageWrapper(Storage<ItemVariant> storage) {
+        public FabricStorageWrapper(Storage<ItemVariant> storage, @Nullable BlockEntity owner) {
             this.storage = storage;
+            this.owner = owner;
         }
         
         @Override
@@ -50,6 +89,18 @@ public class FabricItemApi implements BlockItemApi {
             }
         }
         
+        // the transaction is only committed if everything fits, otherwise it is rolled back on close
+        @Override
+        public boolean insertExact(ItemStack inserted) {
+            if (inserted.isEmpty()) return true;
+            try (var transaction = Transaction.openOuter()) {
+                var insertCount = storage.insert(ItemVariant.of(inserted), inserted.getCount(), transaction);
+                if (insertCount != inserted.getCount()) return false;
+                transaction.commit();
+                return true;
+            }
+        }
+        
         @Override
         public int insertToSlot(ItemStack inserted, int slot, boolean simulate) {
             if (inserted.isEmpty()) return 0;
@@ -101,6 +152,76 @@ public class FabricItemApi implements BlockItemApi {
             return 0;
         }
         
+        // storage versions only cover changes made through the transfer api, direct inventory changes are tracked through markDirty
+        @Override
+        public long getChangeVersion() {
+            return storage.getVersion();
+        }
+        
+        @Override
+        public long getChangeCount() {
+            return ChangeCounter.getChangeCount(owner);
+        }
+        
+        // the slot views are checked directly. A stack is only created for the matching slot, unless the filter needs the full stack.
+        @Override
+        public @Nullable ItemApi.SlotExtraction extractFirstMatching(ItemApi.ItemFilter filter, int maxCount, int startSlot) {
+            
+            if (storage instanceof SlottedStorage<ItemVariant> slottedStorage) {
+                var slotCount = slottedStorage.getSlotCount();
+                if (slotCount == 0) return null;
+                
+                var offset = Math.floorMod(startSlot, slotCount);
+                for (int i = 0; i < slotCount; i++) {
+                    var slot = (offset + i) % slotCount;
+                    var extracted = tryExtract(slottedStorage.getSlot(slot), filter, maxCount);
+                    if (extracted != null)
+                        return new ItemApi.SlotExtraction(extracted, slot);
+                }
+                
+                return null;
+            }
+            
+            // without slots, the index of the non-empty view is used as slot. The views after the start index are scanned first.
+            var offset = Math.max(startSlot, 0);
+            var index = 0;
+            for (var view : storage.nonEmptyViews()) {
+                if (index++ < offset) continue;
+                var extracted = tryExtract(view, filter, maxCount);
+                if (extracted != null)
+                    return new ItemApi.SlotExtraction(extracted, index - 1);
+            }
+            
+            index = 0;
+            for (var view : storage.nonEmptyViews()) {
+                if (index++ >= offset) break;
+                var extracted = tryExtract(view, filter, maxCount);
+                if (extracted != null)
+                    return new ItemApi.SlotExtraction(extracted, index - 1);
+            }
+            
+            return null;
+        }
+        
+        private static @Nullable ItemStack tryExtract(StorageView<ItemVariant> view, ItemApi.ItemFilter filter, int maxCount) {
+            if (view.isResourceBlank() || view.getAmount() <= 0) return null;
+            
+            var resource = view.getResource();
+            var count = (int) Math.min(view.getAmount(), maxCount);
+            if (filter.isItemOnly()) {
+                if (!filter.testItem(resource.getItem())) return null;
+            } else if (!filter.test(resource.toStack(count))) {
+                return null;
+            }
+            
+            try (var transaction = Transaction.openOuter()) {
+                var extractedCount = view.extract(resource, count, transaction);
+                if (extractedCount <= 0) return null;
+                transaction.commit();
+                return resource.toStack((int) extractedCount);
+            }
+        }
+        
         @Override
         public void setStackInSlot(int slot, ItemStack stack) {
             Belts.LOGGER.error("Unable to set stack in slot: {}, stack is: {}", slot, stack);
@@ -3,18 +3,23 @@ package rearth.belts.neoforge;
 import rearth.belts.Belts;
 import rearth.belts.api.item.BlockItemApi;
 import rearth.belts.api.item.ItemApi;
+import rearth.belts.util.ChangeCounter;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.item.ItemStack;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.world.World;
+import net.neoforged.neoforge.capabilities.BlockCapabilityCache;
 import net.neoforged.neoforge.capabilities.Capabilities;
 import net.neoforged.neoforge.items.IItemHandler;
 import net.neoforged.neoforge.items.IItemHandlerModifiable;
 import net.neoforged.neoforge.items.ItemHandlerHelper;
 import org.jetbrains.annotations.Nullable;
 
+
 public class NeoforgeItemApiImpl implements BlockItemApi {
     
     @Override
@@ -22,16 +27,53 @@ public class NeoforgeItemApiImpl implements BlockItemApi {
         
         var candidate = world.getCapability(Capabilities.ItemHandler.BLOCK, pos, state, entity, direction);
         if (candidate == null) return null;
-        return new NeoforgeStoragerWrapper(candidate);
+        return new NeoforgeStoragerWrapper(candidate, entity != null ? entity : world.getBlockEntity(pos));
+    }
+    
+    @Override
+    public Cache createCache(ServerWorld world, BlockPos pos, Direction direction) {
+        return new NeoforgeStorageCache(BlockCapabilityCache.create(Capabilities.ItemHandler.BLOCK, world, pos, direction));
+    }
+    
+    // reuses the wrapper as long as the cached capability stays the same
+    public static class NeoforgeStorageCache implements Cache {
+        
+        private final BlockCapabilityCache<IItemHandler, Direction> cache;
+        private NeoforgeStoragerWrapper lastWrapper;
+        
+        public NeoforgeStorageCache(BlockCapabilityCache<IItemHandler, Direction> cache) {
+            this.cache = cache;
+        }
+        
+        @Override
+        public @Nullable ItemApi.InventoryStorage find() {
+            var candidate = cache.getCapability();
+            if (candidate == null) {
+                lastWrapper = null;
+                return null;
+            }
+            
+            if (lastWrapper == null || lastWrapper.container != candidate)
+                lastWrapper = new NeoforgeStoragerWrapper(candidate, cache.level().getBlockEntity(cache.pos()));
+            return lastWrapper;
+        }
     }
     
     // used to interact with storages from other mods. Belts really only uses the insert/extract methods, not the insertToSlot/extractFromSlot variants.
     public static class NeoforgeStoragerWrapper implements ItemApi.InventoryStorage {
         
         private final IItemHandler container;
+        // block entity providing the handler, if any. Item handlers have no change counter, so markDirty calls of the owner are used instead.
+        private final @Nullable BlockEntity owner;
         
-        public NeoforgeStoragerWrapper(IItemHandler candidate) {
+        public NeoforgeStoragerWrapper(IItemHandler candidate, @Nullable BlockEntity owner) {
             this.container = candidate;
+            this.owner = owner;
+        }
+        
+        @Override
+        public long getChangeCount() {
+            return ChangeCounter.getChangeCount(owner);
         }
         
         @Override
@@ -39,6 +81,59 @@ public class NeoforgeItemApiImpl implements BlockItemApi {
             return inserted.getCount() - ItemHandlerHelper.insertItem(container, inserted, simulate).getCount();
         }
         
+        // item handlers have no transactions. The simulated pass remembers the slots that accept items, so the real insertion only touches those.
+        // If the handler takes less than it simulated, the rest goes into any other slot. If it doesn't fit anywhere, the inserted items
+        // are taken out again and the caller keeps the whole stack.
+        @Override
+        public boolean insertExact(ItemStack inserted) {
+            if (inserted.isEmpty()) return true;
+            
+            // simulated inserts don't keep the stack, so a single copy is reused for all slots
+            var probe = inserted.copy();
+            var slots = new IntArrayList();
+            var remaining = inserted.getCount();
+            for (int i = 0; i < container.getSlots() && remaining > 0; i++) {
+                probe.setCount(remaining);
+                var left = container.insertItem(i, probe, true).getCount();
+                if (left < remaining) {
+                    slots.add(i);
+                    remaining = left;
+                }
+            }
+            if (remaining > 0) return false;
+            
+            // real inserts may store the given stack in the slot, so they work on a copy. The handler returns a new stack for any remainder.
+            var insertedSlots = new IntArrayList(slots.size());
+            var insertedAmounts = new IntArrayList(slots.size());
+            var leftover = inserted.copy();
+            for (int i = 0; i < slots.size() && !leftover.isEmpty(); i++)
+                leftover = insertIntoSlot(slots.getInt(i), leftover, insertedSlots, insertedAmounts);
+            for (int i = 0; i < container.getSlots() && !leftover.isEmpty(); i++)
+                leftover = insertIntoSlot(i, leftover, insertedSlots, insertedAmounts);
+            
+            if (leftover.isEmpty()) return true;
+            
+            var missing = 0;
+            for (int i = insertedSlots.size() - 1; i >= 0; i--) {
+                var amount = insertedAmounts.getInt(i);
+                missing += amount - container.extractItem(insertedSlots.getInt(i), amount, false).getCount();
+            }
+            if (missing > 0)
+                Belts.LOGGER.warn("Item handler {} accepted less than simulated, and {} of {} could not be taken out again", container, missing, inserted);
+            
+            return false;
+        }
+        
+        private ItemStack insertIntoSlot(int slot, ItemStack stack, IntArrayList insertedSlots, IntArrayList insertedAmounts) {
+            var count = stack.getCount();
+            var left = container.insertItem(slot, stack, false);
+            if (left.getCount() < count) {
+                insertedSlots.add(slot);
+                insertedAmounts.add(count - left.getCount());
+            }
+            return left;
+        }
+        
         @Override
         public int insertToSlot(ItemStack inserted, int slot, boolean simulate) {
             return inserted.getCount() - container.insertItem(slot, inserted, simulate).getCount();
@@ -62,6 +157,26 @@ public class NeoforgeItemApiImpl implements BlockItemApi {
             return container.extractItem(slot, extracted.getCount(), simulate).getCount();
         }
         
+        // the handler returns the extracted stack directly, so no copy of the scanned stack is needed
+        @Override
+        public @Nullable ItemApi.SlotExtraction extractFirstMatching(ItemApi.ItemFilter filter, int maxCount, int startSlot) {
+            var slotCount = container.getSlots();
+            if (slotCount == 0) return null;
+            
+            var offset = Math.floorMod(startSlot, slotCount);
+            for (int i = 0; i < slotCount; i++) {
+                var slot = (offset + i) % slotCount;
+                var available = container.getStackInSlot(slot);
+                if (available.isEmpty() || !filter.test(available)) continue;
+                
+                var extracted = container.extractItem(slot, Math.min(available.getCount(), maxCount), false);
+                if (!extracted.isEmpty())
+                    return new ItemApi.SlotExtraction(extracted, slot);
+            }
+            
+            return null;
+        }
+        
         @Override
         public void setStackInSlot(int slot, ItemStack stack) {
             if (container instanceof IItemHandlerModifiable handler) {